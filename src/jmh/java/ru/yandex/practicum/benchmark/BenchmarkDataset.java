@@ -0,0 +1,161 @@
+package ru.yandex.practicum.benchmark;
+
+import org.flywaydb.core.Flyway;
+import org.h2.Driver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.repository.ImageStore;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.StringJoiner;
+
+/**
+ * Seeds an H2 or PostgreSQL database with the migrated schema and a deterministic data set of the requested size.
+ * Post ids are 1..posts and tag names are tag0..tag(tags - 1), each post carrying three of them.
+ */
+public class BenchmarkDataset {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String[] WORDS = {
+            "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit", "sed", "do",
+            "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua", "enim"
+    };
+
+    private final int posts;
+
+    private final int tags;
+
+    private final int commentsPerPost;
+
+    private final int imageSize;
+
+    private final int textLength;
+
+    public BenchmarkDataset(int posts, int tags, int commentsPerPost, int imageSize, int textLength) {
+        if (tags < 8) {
+            throw new IllegalArgumentException("At least 8 tags are needed to give every post three distinct ones");
+        }
+        this.posts = posts;
+        this.tags = tags;
+        this.commentsPerPost = commentsPerPost;
+        this.imageSize = imageSize;
+        this.textLength = textLength;
+    }
+
+    public static DataSource createDataSource(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+        dataSource.setDriverClassName(Driver.class.getName());
+        dataSource.setUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        return dataSource;
+    }
+
+    // the driver is picked by the URL
+    public static DataSource createDataSource(String url, String username, String password) {
+        return new DriverManagerDataSource(url, username, password);
+    }
+
+    // the database outlives a trial, so it is emptied and migrated again
+    public static void createSchema(DataSource dataSource) {
+        var jdbcTemplate = new JdbcTemplate(dataSource);
+        var postgres = "PostgreSQL".equals(jdbcTemplate.execute(
+                (ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName()));
+        if (postgres) {
+            jdbcTemplate.execute("drop schema public cascade");
+            jdbcTemplate.execute("create schema public");
+        } else {
+            jdbcTemplate.execute("drop all objects");
+        }
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration/common", postgres ? "classpath:db/migration/postgresql" : "classpath:db/migration/h2")
+                .load()
+                .migrate();
+    }
+
+    public void seed(JdbcTemplate jdbcTemplate, ImageStore imageStore) {
+        var random = new Random(42);
+        List<Object[]> tagRows = new ArrayList<>();
+        for (int i = 0; i < tags; i++) {
+            tagRows.add(new Object[]{tagName(i)});
+        }
+        jdbcTemplate.batchUpdate("insert into tag (name) values (?)", tagRows);
+
+        List<Object[]> postRows = new ArrayList<>();
+        List<Object[]> postTagRows = new ArrayList<>();
+        for (long id = 1; id <= posts; id++) {
+            var postTags = postTags(id);
+            var tagsAsText = new StringJoiner(" ");
+            for (int tag : postTags) {
+                tagsAsText.add(tagName(tag));
+                postTagRows.add(new Object[]{id, tag + 1L});
+            }
+            var image = image(random);
+            var hash = image == null ? null : imageStore.save(new ByteArrayInputStream(image), image.length).getHash();
+            postRows.add(new Object[]{"Post " + id, image == null ? null : "image/png", hash, image == null ? null : imageSize,
+                    text(random), tagsAsText.toString(), random.nextInt(100)});
+            if (postRows.size() == BATCH_SIZE) {
+                insertPosts(jdbcTemplate, postRows);
+                postRows.clear();
+            }
+        }
+        insertPosts(jdbcTemplate, postRows);
+        jdbcTemplate.batchUpdate("insert into post_tag (post_id, tag_id) values (?, ?)", postTagRows);
+
+        List<Object[]> commentRows = new ArrayList<>();
+        for (long id = 1; id <= posts; id++) {
+            for (int i = 0; i < commentsPerPost; i++) {
+                commentRows.add(new Object[]{id, "Comment " + i + " to post " + id});
+            }
+            if (commentRows.size() >= BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("insert into comment (post_id, text) values (?, ?)", commentRows);
+                commentRows.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into comment (post_id, text) values (?, ?)", commentRows);
+    }
+
+    public int getPosts() {
+        return posts;
+    }
+
+    public String tagName(int tag) {
+        return "tag" + tag;
+    }
+
+    public int[] postTags(long postId) {
+        var first = (int) (postId % tags);
+        return new int[]{first, (first + 1) % tags, (first + 7) % tags};
+    }
+
+    public String text(Random random) {
+        var text = new StringBuilder(textLength + 16);
+        while (text.length() < textLength) {
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+            text.append(random.nextInt(12) == 0 ? '\n' : ' ');
+        }
+        return text.toString();
+    }
+
+    private byte[] image(Random random) {
+        if (imageSize == 0) {
+            return null;
+        }
+        var image = new byte[imageSize];
+        random.nextBytes(image);
+        return image;
+    }
+
+    private static void insertPosts(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("insert into post (title, image_content_type, image_hash, image_size, text, tags, likes_count) "
+                + "values (?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.model.Comment;
+import ru.yandex.practicum.repository.CommentRepository;
+import ru.yandex.practicum.repository.DatabaseImageStore;
+import ru.yandex.practicum.repository.SqlDialect;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CommentLoadingBenchmark {
+
+    @Param({"10000"})
+    private int posts;
+
+    @Param({"5"})
+    private int commentsPerPost;
+
+    @Param({"10", "100"})
+    private int pageSize;
+
+    private CommentRepository commentRepository;
+
+    private List<Long> pagePostIds;
+
+    @Setup
+    public void setUp() {
+        var dataSource = BenchmarkDataset.createDataSource("comments");
+        BenchmarkDataset.createSchema(dataSource);
+        var jdbcTemplate = new JdbcTemplate(dataSource);
+        new BenchmarkDataset(posts, 50, commentsPerPost, 0, 200)
+                .seed(jdbcTemplate, new DatabaseImageStore(jdbcTemplate, new SqlDialect(jdbcTemplate)));
+        commentRepository = new CommentRepository(jdbcTemplate);
+        var first = posts / 2L;
+        pagePostIds = LongStream.range(first, first + pageSize).boxed().toList();
+    }
+
+    @Benchmark
+    public void perPost(Blackhole blackhole) {
+        for (var postId : pagePostIds) {
+            blackhole.consume(commentRepository.findAllCommentsByPostId(postId));
+        }
+    }
+
+    @Benchmark
+    public Map<Long, List<Comment>> batched() {
+        return commentRepository.findAllCommentsByPostIds(pagePostIds);
+    }
+
+    @Benchmark
+    public Map<Long, Integer> countsOnly() {
+        return commentRepository.countCommentsByPostIds(pagePostIds);
+    }
+
+}
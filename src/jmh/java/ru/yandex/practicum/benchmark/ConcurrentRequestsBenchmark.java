@@ -0,0 +1,130 @@
+package ru.yandex.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.BlogApplication;
+import ru.yandex.practicum.repository.DatabaseImageStore;
+import ru.yandex.practicum.repository.SqlDialect;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the running server: every JMH thread is a client waiting for its response, so {@code -t} sets the
+ * concurrency (above Tomcat's 200 platform threads by default). Compares platform and virtual request threads for
+ * a small and a large connection pool; caches are off so every request goes to the database. Throughput and the
+ * latency percentiles of the sample mode are both reported.
+ * <p>
+ * Request threads differ in how they wait on blocking JDBC calls, which in-process H2 never makes, so run it
+ * against PostgreSQL: {@code BLOG_LOAD_DB_URL}, {@code BLOG_LOAD_DB_USERNAME} and {@code BLOG_LOAD_DB_PASSWORD},
+ * or the {@code blog.load.db.*} system properties passed to the fork with {@code -jvmArgs}. The database is
+ * emptied and seeded before the application starts. Without a URL it runs on H2, which only shows the cost of
+ * the threads themselves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Threads(400)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+public class ConcurrentRequestsBenchmark {
+
+    @Param({"10000"})
+    private int posts;
+
+    @Param({"false", "true"})
+    private String virtualThreads;
+
+    @Param({"3", "50"})
+    private String poolSize;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient client;
+
+    private String baseUrl;
+
+    @Setup
+    public void setUp() {
+        // H2 also gets the PostgreSQL driver properties of application.properties, it has to ignore them
+        var url = setting("url", "jdbc:h2:mem:load;DB_CLOSE_DELAY=-1;IGNORE_UNKNOWN_SETTINGS=TRUE");
+        var username = setting("username", "sa");
+        var password = setting("password", "");
+        var h2 = url.startsWith("jdbc:h2:");
+
+        var dataSource = BenchmarkDataset.createDataSource(url, username, password);
+        BenchmarkDataset.createSchema(dataSource);
+        var jdbcTemplate = new JdbcTemplate(dataSource);
+        new BenchmarkDataset(posts, 50, 3, 4096, 2000)
+                .seed(jdbcTemplate, new DatabaseImageStore(jdbcTemplate, new SqlDialect(jdbcTemplate)));
+
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + username,
+                "--spring.datasource.password=" + password,
+                "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--spring.cache.type=none",
+                "--blog.images.variants.backfill.enabled=false",
+                "--server.port=0",
+                "--logging.level.root=WARN"));
+        if (h2) {
+            // H2 has no full-text search, the postgres search would also fail the index check on startup
+            args.add("--spring.datasource.driver-class-name=org.h2.Driver");
+            args.add("--blog.search.type=memory");
+        }
+        context = new SpringApplicationBuilder(BlogApplication.class).run(args.toArray(String[]::new));
+        baseUrl = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        context.close();
+    }
+
+    @Benchmark
+    public int feed() throws IOException, InterruptedException {
+        return get("/?pageSize=10");
+    }
+
+    @Benchmark
+    public int post() throws IOException, InterruptedException {
+        return get("/" + ThreadLocalRandom.current().nextInt(1, posts + 1));
+    }
+
+    private static String setting(String name, String defaultValue) {
+        var value = System.getProperty("blog.load.db." + name, System.getenv("BLOG_LOAD_DB_" + name.toUpperCase()));
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+}
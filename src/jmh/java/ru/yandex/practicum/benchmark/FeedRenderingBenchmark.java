@@ -0,0 +1,110 @@
+package ru.yandex.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import ru.yandex.practicum.BlogApplication;
+import ru.yandex.practicum.repository.ImageStore;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Renders the feed through the whole application (controller, services, caches, Thymeleaf) against H2.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FeedRenderingBenchmark {
+
+    @Param({"10000"})
+    private int posts;
+
+    @Param({"3"})
+    private int commentsPerPost;
+
+    @Param({"10", "50"})
+    private String pageSize;
+
+    @Param({"none", "caffeine"})
+    private String cacheType;
+
+    private ConfigurableApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    private String deepPage;
+
+    private String deepCursor;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(BlogApplication.class)
+                .run("--spring.datasource.url=jdbc:h2:mem:feed;DB_CLOSE_DELAY=-1;IGNORE_UNKNOWN_SETTINGS=TRUE",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.cache.type=" + cacheType,
+                        "--server.port=0",
+                        "--logging.level.root=WARN");
+        BenchmarkDataset.createSchema(context.getBean(DataSource.class));
+        new BenchmarkDataset(posts, 50, commentsPerPost, 4096, 2000).seed(context.getBean(JdbcTemplate.class), context.getBean(ImageStore.class));
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        deepPage = String.valueOf(posts / Integer.parseInt(pageSize));
+        deepCursor = String.valueOf(posts - Integer.parseInt(pageSize));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String firstPage() throws Exception {
+        return render("pageSize", pageSize);
+    }
+
+    @Benchmark
+    public String deepPage() throws Exception {
+        return render("pageSize", pageSize, "pageNumber", deepPage);
+    }
+
+    @Benchmark
+    public String deepCursor() throws Exception {
+        return render("pageSize", pageSize, "after", deepCursor);
+    }
+
+    @Benchmark
+    public String search() throws Exception {
+        return render("pageSize", pageSize, "search", "tag3 tag4");
+    }
+
+    private String render(String... params) throws Exception {
+        var request = get("/");
+        for (int i = 0; i < params.length; i += 2) {
+            request.param(params[i], params[i + 1]);
+        }
+        return mockMvc.perform(request).andReturn().getResponse().getContentAsString();
+    }
+
+}
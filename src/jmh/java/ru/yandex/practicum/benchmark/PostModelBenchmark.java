@@ -0,0 +1,88 @@
+package ru.yandex.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.yandex.practicum.model.Post;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps a page of posts the way the row mapper does. {@code eagerPage} repeats the derivation the constructor
+ * used to do for every row, so running with {@code -prof gc} shows the allocation saved by deriving lazily.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PostModelBenchmark {
+
+    @Param({"100"})
+    private int pageSize;
+
+    @Param({"200", "2000", "20000"})
+    private int textLength;
+
+    private List<String> texts;
+
+    private String tags;
+
+    @Setup
+    public void setUp() {
+        var dataset = new BenchmarkDataset(pageSize, 50, 0, 0, textLength);
+        var random = new Random(42);
+        texts = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            texts.add(dataset.text(random));
+        }
+        tags = "tag1 tag2 tag8";
+    }
+
+    @Benchmark
+    public List<Post> mapPage() {
+        List<Post> page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            page.add(new Post((long) i, "Post " + i, null, texts.get(i), tags, 10));
+        }
+        return page;
+    }
+
+    @Benchmark
+    public void mapAndRenderFeedPage(Blackhole blackhole) {
+        for (var post : mapPage()) {
+            blackhole.consume(post.getTextPreview());
+            blackhole.consume(post.getTags());
+        }
+    }
+
+    @Benchmark
+    public void eagerPage(Blackhole blackhole) {
+        for (var post : mapPage()) {
+            var text = post.getText();
+            blackhole.consume(text.length() > 300 ? text.substring(0, 300) + "..." : text);
+            blackhole.consume(Arrays.stream(text.split("\\n")).toList());
+            blackhole.consume(Arrays.stream(post.getTagsAsText().split("\\s")).toList());
+        }
+    }
+
+    @Benchmark
+    public Post copy() {
+        return new Post(1L, "Post 1", null, texts.get(0), tags, 10).copy();
+    }
+
+}
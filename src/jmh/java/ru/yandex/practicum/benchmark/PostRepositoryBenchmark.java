@@ -0,0 +1,148 @@
+package ru.yandex.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.model.ImageMetadata;
+import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.repository.DatabaseImageStore;
+import ru.yandex.practicum.repository.FileSystemImageStore;
+import ru.yandex.practicum.repository.ImageLockRepository;
+import ru.yandex.practicum.repository.ImageStore;
+import ru.yandex.practicum.repository.InMemoryPostSearch;
+import ru.yandex.practicum.repository.PostRepository;
+import ru.yandex.practicum.repository.SqlDialect;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PostRepositoryBenchmark {
+
+    @Param({"10000"})
+    private int posts;
+
+    @Param({"262144"})
+    private int imageSize;
+
+    @Param({"10"})
+    private int pageSize;
+
+    @Param({"db", "fs"})
+    private String imageStoreType;
+
+    private BenchmarkDataset dataset;
+
+    private PostRepository postRepository;
+
+    private String search;
+
+    private int deepPage;
+
+    private long middleId;
+
+    private Path imageDirectory;
+
+    @Setup
+    public void setUp() throws IOException {
+        var dataSource = BenchmarkDataset.createDataSource("repository");
+        BenchmarkDataset.createSchema(dataSource);
+        var jdbcTemplate = new JdbcTemplate(dataSource);
+        var sqlDialect = new SqlDialect(jdbcTemplate);
+        ImageStore imageStore;
+        if (imageStoreType.equals("fs")) {
+            imageDirectory = Files.createTempDirectory("blog-images");
+            imageStore = new FileSystemImageStore(imageDirectory);
+        } else {
+            imageStore = new DatabaseImageStore(jdbcTemplate, sqlDialect);
+        }
+        dataset = new BenchmarkDataset(posts, 50, 0, imageSize, 2000);
+        dataset.seed(jdbcTemplate, imageStore);
+        postRepository = new PostRepository(jdbcTemplate, imageStore,
+                new ImageLockRepository(jdbcTemplate, imageStore, sqlDialect), new InMemoryPostSearch(jdbcTemplate), sqlDialect);
+        search = dataset.tagName(3);
+        deepPage = posts / pageSize;
+        middleId = posts / 2;
+    }
+
+    // the fs store writes posts * imageSize bytes, every trial must remove its copy
+    @TearDown
+    public void tearDown() throws IOException {
+        if (imageDirectory == null) {
+            return;
+        }
+        try (var paths = Files.walk(imageDirectory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+        imageDirectory = null;
+    }
+
+    @Benchmark
+    public List<Post> findAllFirstPage() {
+        return postRepository.findAll("", 1, pageSize);
+    }
+
+    @Benchmark
+    public List<Post> findAllDeepPage() {
+        return postRepository.findAll("", deepPage, pageSize);
+    }
+
+    @Benchmark
+    public List<Post> findAllSearchFirstPage() {
+        return postRepository.findAll(search, 1, pageSize);
+    }
+
+    @Benchmark
+    public List<Post> findAllSearchDeepPage() {
+        // every tag is carried by 3 of 50 posts, so the last page of a tag search is around here
+        return postRepository.findAll(search, Math.max(1, posts * 3 / 50 / pageSize), pageSize);
+    }
+
+    @Benchmark
+    public List<Post> findAllAfterDeepCursor() {
+        return postRepository.findAllAfter("", posts - pageSize - 1L, pageSize + 1);
+    }
+
+    @Benchmark
+    public Post findById() throws Exception {
+        return postRepository.findById(middleId);
+    }
+
+    @Benchmark
+    public byte[] findImageById() throws Exception {
+        return postRepository.findImageById(middleId);
+    }
+
+    @Benchmark
+    public ImageMetadata findImageMetadata() throws Exception {
+        return postRepository.findImageMetadata(middleId);
+    }
+
+    @Benchmark
+    public void writeImage() {
+        postRepository.writeImage(middleId, 0, imageSize, OutputStream.nullOutputStream());
+    }
+
+}
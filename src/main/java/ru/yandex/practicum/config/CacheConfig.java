@@ -0,0 +1,18 @@
+package ru.yandex.practicum.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+// evictions run outside of the repository transactions, so a reader can't cache rows that are about to change
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+
+    public static final String POSTS = "posts";
+
+    public static final String FEEDS = "feeds";
+
+    public static final String COMMENTS = "comments";
+
+}
@@ -1,10 +1,11 @@
 package ru.yandex.practicum.config;
 
+import com.zaxxer.hikari.HikariDataSource;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import javax.sql.DataSource;
@@ -26,10 +27,11 @@ public class DataSourceConfig {
     private String dsDriverClassName;
 
     @Bean
-    public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
         dataSource.setDriverClassName(dsDriverClassName);
-        dataSource.setUrl(dsUrl);
+        dataSource.setJdbcUrl(dsUrl);
         dataSource.setUsername(dsUserName);
         dataSource.setPassword(dsPassword);
         return dataSource;
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+    public static final String FEED_EXECUTOR = "feedExecutor";
+
+    // every task holds a pooled connection, so the limit keeps concurrent feeds from queueing on the pool;
+    // a submit over the limit waits for a free slot. The limit stays below the pool size, so one connection
+    // is always left for requests that do not go through the feed
+    @Bean(name = FEED_EXECUTOR)
+    public SimpleAsyncTaskExecutor feedExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                                @Value("${blog.feed.max-concurrent-queries:8}") int maxConcurrentQueries,
+                                                @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        var executor = new SimpleAsyncTaskExecutor("feed-");
+        executor.setVirtualThreads(virtualThreads);
+        executor.setConcurrencyLimit(Math.max(1, Math.min(maxConcurrentQueries, poolSize - 1)));
+        return executor;
+    }
+
+}
@@ -0,0 +1,210 @@
+package ru.yandex.practicum.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Times every statement executed through the data source and records the rows and blob bytes read from its
+ * result set, tagged with the normalized SQL. Statements slower than the threshold are logged.
+ */
+@Slf4j
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    // statement is a meter tag, SQL with inlined literals must not grow it without bound; the limit counts
+    // normalized names, so in-lists of different lengths do not use it up
+    private static final int MAX_STATEMENTS = 1000;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // "in (?, ?, ?)" has as many placeholders as ids, it is still one statement
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+
+    private final MeterRegistry meterRegistry;
+
+    private final long slowQueryNanos;
+
+    private final Set<String> statementNames = ConcurrentHashMap.newKeySet();
+
+    public InstrumentedDataSource(DataSource target, MeterRegistry meterRegistry, Duration slowQueryThreshold) {
+        super(target);
+        this.meterRegistry = meterRegistry;
+        this.slowQueryNanos = slowQueryThreshold.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(super.getConnection(username, password));
+    }
+
+    private Connection connection(Connection target) {
+        return proxy(Connection.class, target, (method, args) -> {
+            var result = invoke(target, method, args);
+            return switch (method.getName()) {
+                case "prepareStatement", "prepareCall" -> statement(method.getReturnType(), (Statement) result, (String) args[0]);
+                case "createStatement" -> statement(Statement.class, (Statement) result, null);
+                default -> result;
+            };
+        });
+    }
+
+    private Object statement(Class<?> type, Statement target, String preparedSql) {
+        return proxy(type, target, (method, args) -> {
+            if (!EXECUTE_METHODS.contains(method.getName())) {
+                var result = invoke(target, method, args);
+                return result instanceof ResultSet resultSet && method.getName().equals("getResultSet")
+                        ? resultSet(resultSet, statementName(preparedSql)) : result;
+            }
+            var sql = preparedSql != null ? preparedSql : args != null && args[0] instanceof String s ? s : "batch";
+            var name = statementName(sql);
+            var outcome = "error";
+            var start = System.nanoTime();
+            try {
+                var result = invoke(target, method, args);
+                outcome = "success";
+                return result instanceof ResultSet resultSet ? resultSet(resultSet, name) : result;
+            } finally {
+                var elapsed = System.nanoTime() - start;
+                Timer.builder("blog.jdbc.query")
+                        .tag("statement", name)
+                        .tag("outcome", outcome)
+                        .register(meterRegistry)
+                        .record(elapsed, TimeUnit.NANOSECONDS);
+                if (slowQueryNanos > 0 && elapsed >= slowQueryNanos) {
+                    log.warn("Slow query ({} ms, {}): {}", TimeUnit.NANOSECONDS.toMillis(elapsed), outcome, name);
+                }
+            }
+        });
+    }
+
+    private ResultSet resultSet(ResultSet target, String name) {
+        var fetch = new Fetch();
+        return proxy(ResultSet.class, target, (method, args) -> {
+            var result = invoke(target, method, args);
+            switch (method.getName()) {
+                case "next" -> fetch.rows += Boolean.TRUE.equals(result) ? 1 : 0;
+                case "getBytes" -> fetch.bytes += result == null ? 0 : ((byte[]) result).length;
+                case "getBinaryStream" -> {
+                    return result == null ? null : new CountingInputStream((InputStream) result, fetch);
+                }
+                case "close" -> fetched(name, fetch);
+                default -> {
+                }
+            }
+            return result;
+        });
+    }
+
+    private void fetched(String name, Fetch fetch) {
+        if (fetch.closed) {
+            return;
+        }
+        fetch.closed = true;
+        DistributionSummary.builder("blog.jdbc.query.rows")
+                .tag("statement", name)
+                .register(meterRegistry)
+                .record(fetch.rows);
+        if (fetch.bytes > 0) {
+            DistributionSummary.builder("blog.jdbc.query.blob.bytes")
+                    .baseUnit("bytes")
+                    .tag("statement", name)
+                    .register(meterRegistry)
+                    .record(fetch.bytes);
+        }
+    }
+
+    private String statementName(String sql) {
+        if (sql == null) {
+            return "unknown";
+        }
+        var name = PLACEHOLDER_LIST.matcher(WHITESPACE.matcher(sql.trim()).replaceAll(" ")).replaceAll("(?, ...)");
+        if (statementNames.size() >= MAX_STATEMENTS && !statementNames.contains(name)) {
+            return "other";
+        }
+        statementNames.add(name);
+        return name;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> method.getParameterCount() == 1 ? proxy == args[0] : handler.invoke(proxy, method, args);
+                    case "hashCode" -> method.getParameterCount() == 0 ? System.identityHashCode(proxy) : handler.invoke(proxy, method, args);
+                    case "toString" -> method.getParameterCount() == 0 ? "Instrumented " + target : handler.invoke(proxy, method, args);
+                    default -> handler.invoke(proxy, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class Fetch {
+
+        private long rows;
+
+        private long bytes;
+
+        private boolean closed;
+
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final Fetch fetch;
+
+        private CountingInputStream(InputStream in, Fetch fetch) {
+            super(in);
+            this.fetch = fetch;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var b = in.read();
+            fetch.bytes += b < 0 ? 0 : 1;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var n = in.read(b, off, len);
+            fetch.bytes += Math.max(n, 0);
+            return n;
+        }
+
+    }
+
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+public class MetricsConfig {
+
+    // wraps the pool, so Hikari metrics still find it through DataSourceUnwrapper
+    @Bean
+    @ConditionalOnProperty(name = "blog.metrics.jdbc.enabled", havingValue = "true", matchIfMissing = true)
+    public static BeanPostProcessor instrumentedDataSourcePostProcessor(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${blog.metrics.slow-query-threshold:500ms}") Duration slowQueryThreshold) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof InstrumentedDataSource)) {
+                    return new InstrumentedDataSource(dataSource, meterRegistry.getObject(), slowQueryThreshold);
+                }
+                return bean;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,133 @@
+package ru.yandex.practicum.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.service.CommentService;
+import ru.yandex.practicum.service.FeedService;
+import ru.yandex.practicum.service.PostService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * JSON API over the same services as the pages. Posts are written field by field with the streaming generator,
+ * without image bytes and without the fields the client did not ask for.
+ */
+@RestController
+@RequestMapping(value = "/api/posts", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequiredArgsConstructor
+public class PostApiController {
+
+    private static final int MAX_LIMIT = 100;
+
+    private final PostService postService;
+
+    private final CommentService commentService;
+
+    private final FeedService feedService;
+
+    private final ObjectMapper objectMapper;
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> findPosts(@RequestParam(value = "tag", defaultValue = "") String tag,
+                                                           @RequestParam(value = "after", required = false) Long after,
+                                                           @RequestParam(value = "limit", defaultValue = "20") int limit,
+                                                           @RequestParam(value = "fields", required = false) String fields) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_LIMIT);
+        }
+        var selected = PostField.parse(fields, PostField.LIST_DEFAULTS);
+        // comment counts cost a query, they are only loaded when asked for
+        var page = selected.contains(PostField.COMMENT_COUNT)
+                ? feedService.findFeed(tag, after, null, limit)
+                : postService.findPostPage(tag, after, null, limit);
+        return json(json -> {
+            json.writeStartObject();
+            json.writeArrayFieldStart("posts");
+            for (var post : page.getPosts()) {
+                PostField.write(json, post, selected);
+            }
+            json.writeEndArray();
+            if (page.getPaging().getNextCursor() != null) {
+                json.writeNumberField("nextCursor", page.getPaging().getNextCursor());
+            }
+            json.writeEndObject();
+        });
+    }
+
+    @GetMapping("/{postId}")
+    public ResponseEntity<StreamingResponseBody> findPost(@PathVariable("postId") Long postId,
+                                                          @RequestParam(value = "fields", required = false) String fields) throws Exception {
+        var selected = PostField.parse(fields, PostField.POST_DEFAULTS);
+        var post = postService.findById(postId);
+        if (selected.contains(PostField.COMMENT_COUNT)) {
+            post.setCommentCount(commentService.countCommentsByPostIds(List.of(postId)).getOrDefault(postId, 0));
+        }
+        return json(json -> PostField.write(json, post, selected));
+    }
+
+    @GetMapping("/{postId}/comments")
+    public ResponseEntity<StreamingResponseBody> findComments(@PathVariable("postId") Long postId) throws Exception {
+        postService.findById(postId);
+        var comments = commentService.findAllCommentsByPostId(postId);
+        return json(json -> {
+            json.writeStartArray();
+            for (var comment : comments) {
+                json.writeStartObject();
+                json.writeNumberField("id", comment.getId());
+                json.writeStringField("text", comment.getText());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        });
+    }
+
+    @PostMapping("/{postId}/like")
+    public Map<String, Object> like(@PathVariable("postId") Long postId,
+                                    @RequestParam(value = "like", defaultValue = "true") boolean like) throws Exception {
+        postService.findById(postId);
+        postService.changePostLikesCount(postId, like);
+        return Map.of("id", postId, "likesCount", postService.findById(postId).getLikesCount());
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public Map<String, String> notFound(NoSuchElementException e) {
+        return Map.of("error", "Post not found");
+    }
+
+    // the data is loaded before the response starts, so failures still get their status code
+    private ResponseEntity<StreamingResponseBody> json(JsonWriter writer) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> {
+                    try (JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                        writer.write(json);
+                    }
+                });
+    }
+
+    private interface JsonWriter {
+
+        void write(JsonGenerator json) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.service.PostArchiveService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Archive import and export over HTTP. There is no authentication in front of the blog, so the endpoints are
+ * off unless {@code blog.archive.http.enabled=true}.
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "blog.archive.http.enabled", havingValue = "true")
+public class PostArchiveController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final PostArchiveService postArchiveService;
+
+    // the body is read while it arrives, it is never buffered as a whole
+    @PostMapping(value = "/archive/posts", consumes = "application/x-ndjson")
+    public String importPosts(InputStream body) throws IOException {
+        return String.valueOf(postArchiveService.importPosts(body));
+    }
+
+    @GetMapping("/archive/posts")
+    public ResponseEntity<StreamingResponseBody> exportPosts() {
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("posts.ndjson").build().toString())
+                .body(postArchiveService::exportPosts);
+    }
+
+}
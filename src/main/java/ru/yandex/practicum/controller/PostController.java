@@ -1,44 +1,82 @@
 package ru.yandex.practicum.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
-import ru.yandex.practicum.model.Paging;
+import org.springframework.web.server.ResponseStatusException;
+import ru.yandex.practicum.model.ImageVariant;
+import ru.yandex.practicum.model.PostPage;
 import ru.yandex.practicum.service.CommentService;
+import ru.yandex.practicum.service.FeedService;
 import ru.yandex.practicum.service.PostService;
+import ru.yandex.practicum.util.ETags;
+import ru.yandex.practicum.util.Images;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 
 @Controller
 @RequiredArgsConstructor
 public class PostController {
 
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final PostService postService;
 
     private final CommentService commentService;
 
+    private final FeedService feedService;
+
+    @Value("${blog.images.cache-max-age:1h}")
+    private Duration imageCacheMaxAge;
+
     @GetMapping("/")
     public String showPosts(Model model,
                             @RequestParam(value = "pageSize", defaultValue = "5") int pageSize,
                             @RequestParam(value = "pageNumber", defaultValue = "1") int pageNumber,
-                            @RequestParam(value = "search", defaultValue = "") String search) {
-        var postCount = postService.getPostCount(search);
-        var paging = new Paging(postCount, pageNumber, pageSize);
-        var posts = postService.findAllPosts(search, pageNumber, pageSize);
-        posts.forEach(p -> p.setComments(commentService.findAllCommentsByPostId(p.getId())));
-        model.addAttribute("posts", posts);
-        model.addAttribute("paging", paging);
+                            @RequestParam(value = "search", defaultValue = "") String search,
+                            @RequestParam(value = "query", defaultValue = "") String query,
+                            @RequestParam(value = "after", required = false) Long after,
+                            @RequestParam(value = "before", required = false) Long before,
+                            ServletWebRequest webRequest) {
+        // text search is ranked by the search index, it has no cheap validator and is always rendered
+        if (query.isBlank() && notModified(webRequest, feedService.findFeedTag(search, pageNumber, after, before, pageSize), -1)) {
+            return null;
+        }
+        PostPage page;
+        if (!query.isBlank()) {
+            page = feedService.findTextFeed(query, pageNumber, pageSize);
+        } else if (after != null || before != null) {
+            page = feedService.findFeed(search, after, before, pageSize);
+        } else {
+            page = feedService.findFeed(search, pageNumber, pageSize);
+        }
+        if (query.isBlank()) {
+            setETag(webRequest, feedService.feedTag(page, search, pageNumber, after, before, pageSize));
+        }
+        model.addAttribute("posts", page.getPosts());
+        model.addAttribute("paging", page.getPaging());
         model.addAttribute("search", search);
+        model.addAttribute("query", query);
         return "posts";
     }
 
@@ -58,23 +96,102 @@ public class PostController {
     }
 
     @GetMapping("/images/{postId}")
-    public ResponseEntity<Resource> downloadImage(@PathVariable("postId") Long postId) throws Exception {
-        var post = postService.findById(postId);
-        return ResponseEntity.ok()
-                .headers(new HttpHeaders())
-                .contentLength(post.getImage().length)
-                .contentType(MediaType.parseMediaType("application/octet-stream"))
-                .body(new ByteArrayResource(post.getImage()));
+    public void downloadImage(@PathVariable("postId") Long postId,
+                              @RequestParam(value = "size", required = false) String size,
+                              @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                              @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+                              ServletWebRequest webRequest,
+                              HttpServletResponse response) throws Exception {
+        var variant = size == null ? null : ImageVariant.fromValue(size)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST));
+        var image = variant == null ? null : postService.findImageVariantMetadata(postId, variant);
+        if (image == null || !image.isPresent()) {
+            variant = null;
+            image = postService.findImageMetadata(postId);
+        }
+        if (!image.isPresent()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        var etag = image.getHash() == null ? null : "\"" + image.getHash() + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(imageCacheMaxAge).cachePublic().getHeaderValue());
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return;
+        }
+
+        long size = image.getSize();
+        long start = 0;
+        long end = size - 1;
+        boolean partial = false;
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            try {
+                var ranges = HttpRange.parseRanges(range);
+                // multipart/byteranges is not worth it for images, several ranges get the full body
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(size);
+                    end = ranges.get(0).getRangeEnd(size);
+                    partial = true;
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(image.getContentType() == null ? Images.DEFAULT_CONTENT_TYPE : image.getContentType());
+        if (partial) {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+        response.setContentLengthLong(end - start + 1);
+        if (end >= start && variant != null) {
+            postService.writeImageVariant(postId, variant, start, end - start + 1, response.getOutputStream());
+        } else if (end >= start && !sendFile(webRequest.getRequest(), postService.findImageFile(image.getHash()), start, end)) {
+            postService.writeImage(postId, start, end - start + 1, response.getOutputStream());
+        }
+    }
+
+    // lets Tomcat send the file with sendfile(2) after the servlet returns, without copying it through the JVM
+    private static boolean sendFile(HttpServletRequest request, Path file, long start, long end) {
+        if (file == null || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME, file.toString());
+        request.setAttribute(SENDFILE_START, start);
+        request.setAttribute(SENDFILE_END, end + 1);
+        return true;
     }
 
     @GetMapping("/{postId}")
-    public String showPost(Model model, @PathVariable("postId") Long postId) throws Exception {
+    public String showPost(Model model, @PathVariable("postId") Long postId, ServletWebRequest webRequest) throws Exception {
+        var version = postService.findVersion(postId);
+        if (version != null && notModified(webRequest, postTag(postId, version.getVersion(), version.getPendingLikes()),
+                version.getModifiedAt().toEpochMilli())) {
+            return null;
+        }
         var post = postService.findById(postId);
+        setETag(webRequest, postTag(postId, post.getVersion(), post.getPendingLikes()));
         post.setComments(commentService.findAllCommentsByPostId(postId));
         model.addAttribute("post", post);
         return "post";
     }
 
+    // html pages are revalidated on every request, an unchanged one is answered with 304 before it is loaded
+    private static boolean notModified(ServletWebRequest webRequest, String etag, long lastModified) {
+        webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        return webRequest.checkNotModified(etag, lastModified);
+    }
+
+    // a rendered page carries the ETag of the versions it was rendered from, not of those it was checked against
+    private static void setETag(ServletWebRequest webRequest, String etag) {
+        webRequest.getResponse().setHeader(HttpHeaders.ETAG, etag);
+    }
+
+    private static String postTag(Long postId, long version, long pendingLikes) {
+        return ETags.weak("post", postId, version, pendingLikes);
+    }
+
     @PostMapping("/{postId}/like")
     public String changeRating(@PathVariable("postId") Long postId, @RequestParam("like") boolean like) throws Exception {
         postService.changePostLikesCount(postId, like);
@@ -83,11 +200,22 @@ public class PostController {
 
     @PostMapping("/{postId}/delete")
     public String deletePost(@PathVariable("postId") Long postId) {
-        commentService.deleteCommentsByPostId(postId);
         postService.deletePost(postId);
         return "redirect:/";
     }
 
+    @PostMapping("/delete")
+    public String deletePosts(@RequestParam(value = "ids", required = false) List<Long> ids,
+                              @RequestParam(value = "tag", required = false) String tag) {
+        if (ids != null) {
+            postService.deletePosts(ids);
+        }
+        if (tag != null && !tag.isBlank()) {
+            postService.deletePostsByTag(tag.trim());
+        }
+        return "redirect:/";
+    }
+
     @GetMapping("/{postId}/edit")
     public String editPost(Model model, @PathVariable("postId") Long postId) throws Exception {
         var post = postService.findById(postId);
@@ -99,7 +227,7 @@ public class PostController {
     public String updatePost(
             @PathVariable("postId") Long postId,
             @RequestParam("title") String title,
-            @RequestParam("image") MultipartFile image,
+            @RequestParam(value = "image", required = false) MultipartFile image,
             @RequestParam("tags") String tags,
             @RequestParam("text") String text
     ) throws Exception {
@@ -118,13 +246,13 @@ public class PostController {
             @PathVariable("postId") Long postId,
             @PathVariable("commentId") Long commentId,
             @RequestParam("text") String text) {
-        commentService.updateComment(commentId, text);
+        commentService.updateComment(postId, commentId, text);
         return "redirect:/" + postId;
     }
 
     @PostMapping("/{postId}/comments/{commentId}/delete")
     public String deleteComment(@PathVariable("postId") Long postId, @PathVariable("commentId") Long commentId) {
-        commentService.deleteCommentFromPost(commentId);
+        commentService.deleteCommentFromPost(postId, commentId);
         return "redirect:/" + postId;
     }
 
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import ru.yandex.practicum.model.Post;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The post fields of the JSON API, a client picks the ones it needs with {@code fields=id,title,...}.
+ */
+enum PostField {
+
+    ID("id", (json, post) -> json.writeNumberField("id", post.getId())),
+    TITLE("title", (json, post) -> json.writeStringField("title", post.getTitle())),
+    TEXT("text", (json, post) -> json.writeStringField("text", post.getText())),
+    TEXT_PREVIEW("textPreview", (json, post) -> json.writeStringField("textPreview", post.getTextPreview())),
+    TAGS("tags", (json, post) -> {
+        json.writeArrayFieldStart("tags");
+        for (var tag : post.getTags()) {
+            json.writeString(tag);
+        }
+        json.writeEndArray();
+    }),
+    LIKES_COUNT("likesCount", (json, post) -> json.writeNumberField("likesCount", post.getLikesCount())),
+    COMMENT_COUNT("commentCount", (json, post) -> json.writeNumberField("commentCount", post.getCommentCount()));
+
+    static final Set<PostField> LIST_DEFAULTS = EnumSet.of(ID, TITLE, TEXT_PREVIEW, TAGS, LIKES_COUNT, COMMENT_COUNT);
+
+    static final Set<PostField> POST_DEFAULTS = EnumSet.of(ID, TITLE, TEXT, TAGS, LIKES_COUNT, COMMENT_COUNT);
+
+    private final String jsonName;
+
+    private final Writer writer;
+
+    PostField(String name, Writer writer) {
+        this.jsonName = name;
+        this.writer = writer;
+    }
+
+    static Set<PostField> parse(String fields, Set<PostField> defaults) {
+        if (fields == null || fields.isBlank()) {
+            return defaults;
+        }
+        Set<PostField> result = EnumSet.noneOf(PostField.class);
+        for (var name : fields.split(",")) {
+            result.add(fromName(name.trim()));
+        }
+        return result;
+    }
+
+    static void write(JsonGenerator json, Post post, Set<PostField> fields) throws IOException {
+        json.writeStartObject();
+        for (var field : fields) {
+            field.writer.write(json, post);
+        }
+        json.writeEndObject();
+    }
+
+    private static PostField fromName(String name) {
+        for (var field : values()) {
+            if (field.jsonName.equals(name)) {
+                return field;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown field " + name);
+    }
+
+    private interface Writer {
+
+        void write(JsonGenerator json, Post post) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * One line of an NDJSON post archive. The image is base64 in JSON; the id is written on export for reference
+ * and ignored on import, the imported post gets a new one.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ArchivedPost {
+
+    private Long id;
+    private String title;
+    private String text;
+    private String tags;
+    private Integer likesCount;
+    private String imageContentType;
+    private byte[] image;
+    private List<String> comments;
+
+    @JsonIgnore
+    private String imageHash;
+
+}
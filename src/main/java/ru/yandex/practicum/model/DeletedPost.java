@@ -0,0 +1,18 @@
+package ru.yandex.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+public class DeletedPost {
+
+    private Long id;
+    private List<String> tags;
+    private String imageHash;
+
+}
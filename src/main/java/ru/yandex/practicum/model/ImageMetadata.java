@@ -0,0 +1,20 @@
+package ru.yandex.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ImageMetadata {
+
+    private String contentType;
+    private String hash;
+    private Long size;
+
+    public boolean isPresent() {
+        return size != null;
+    }
+
+}
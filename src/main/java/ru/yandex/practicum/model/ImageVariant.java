@@ -0,0 +1,23 @@
+package ru.yandex.practicum.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+@Getter
+@RequiredArgsConstructor
+public enum ImageVariant {
+
+    THUMB("thumb", 300),
+    MEDIUM("medium", 800);
+
+    private final String value;
+    private final int height;
+
+    public static Optional<ImageVariant> fromValue(String value) {
+        return Arrays.stream(values()).filter(variant -> variant.value.equals(value)).findFirst();
+    }
+
+}
@@ -10,6 +10,9 @@ public class Paging {
     private int pageSize;
     private int pageNumber;
     private long pageCount;
+    private boolean cursorBased;
+    private Long previousCursor;
+    private Long nextCursor;
 
     public Paging(long postCount, int pageNumber, int pageSize) {
         this.pageSize = pageSize;
@@ -17,12 +20,23 @@ public class Paging {
         this.pageCount = postCount / pageSize + (postCount % pageSize > 0 ? 1 : 0);
     }
 
+    private Paging(int pageSize, Long previousCursor, Long nextCursor) {
+        this.pageSize = pageSize;
+        this.cursorBased = true;
+        this.previousCursor = previousCursor;
+        this.nextCursor = nextCursor;
+    }
+
+    public static Paging ofCursors(int pageSize, Long previousCursor, Long nextCursor) {
+        return new Paging(pageSize, previousCursor, nextCursor);
+    }
+
     public boolean hasNext() {
-        return pageNumber < pageCount;
+        return cursorBased ? nextCursor != null : pageNumber < pageCount;
     }
 
     public boolean hasPrevious() {
-        return pageNumber > 1;
+        return cursorBased ? previousCursor != null : pageNumber > 1;
     }
 
 }
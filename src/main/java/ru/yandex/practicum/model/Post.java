@@ -1,25 +1,30 @@
 package ru.yandex.practicum.model;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * The text preview, paragraphs and tag list are derived from {@code text} and {@code tagsAsText} on first access
+ * and remembered until the source field is set again, so rows that are never rendered don't pay for them.
+ */
 @Getter
 @Setter
 @EqualsAndHashCode
 public class Post {
 
+    private static final int PREVIEW_LENGTH = 300;
+
     public Post (Long id, String title, byte[] image, String text, String tags, Integer likesCount) {
         this.id = id;
         this.title = title;
         this.image = image;
         this.text = text;
-        this.textPreview = text != null && text.length() > 300 ? text.substring(0, 300) + "..." : text;
-        this.textParts = text == null ? List.of() : Arrays.stream(text.split("\\n")).toList();
-        this.tags = tags == null ? List.of() : Arrays.stream(tags.split("\\s")).toList();
         this.tagsAsText = tags;
         this.likesCount = likesCount;
     }
@@ -28,11 +33,99 @@ public class Post {
     private String title;
     private byte[] image;
     private String text;
-    private String textPreview;
-    private List<String> textParts;
-    private List<String> tags;
     private String tagsAsText;
     private Integer likesCount;
     private List<Comment> comments;
+    private int commentCount;
+    // highlighted html from a full-text search, null otherwise
+    @EqualsAndHashCode.Exclude
+    private String snippet;
+    // the row version and the buffered likes added to likesCount, what a page showing the post is validated by
+    @EqualsAndHashCode.Exclude
+    private long version;
+    @EqualsAndHashCode.Exclude
+    private long pendingLikes;
+
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private String textPreview;
+
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private List<String> textParts;
+
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private List<String> tags;
+
+    public void setText(String text) {
+        this.text = text;
+        this.textPreview = null;
+        this.textParts = null;
+    }
+
+    public void setTagsAsText(String tagsAsText) {
+        this.tagsAsText = tagsAsText;
+        this.tags = null;
+    }
+
+    public String getTextPreview() {
+        if (textPreview == null && text != null) {
+            textPreview = preview(text);
+        }
+        return textPreview;
+    }
+
+    public List<String> getTextParts() {
+        if (textParts == null) {
+            textParts = text == null ? List.of() : splitLines(text);
+        }
+        return textParts;
+    }
+
+    public List<String> getTags() {
+        if (tags == null) {
+            tags = Collections.unmodifiableList(TagQuery.splitTags(tagsAsText));
+        }
+        return tags;
+    }
+
+    public Post copy() {
+        var copy = new Post(id, title, image, text, tagsAsText, likesCount);
+        copy.setComments(comments);
+        copy.setCommentCount(commentCount);
+        copy.setSnippet(snippet);
+        copy.setVersion(version);
+        copy.setPendingLikes(pendingLikes);
+        return copy;
+    }
+
+    private static String preview(String text) {
+        if (text.length() <= PREVIEW_LENGTH) {
+            return text;
+        }
+        var end = PREVIEW_LENGTH;
+        if (Character.isHighSurrogate(text.charAt(end - 1)) && Character.isLowSurrogate(text.charAt(end))) {
+            end--;
+        }
+        return text.substring(0, end) + "...";
+    }
+
+    // same result as text.split("\n") without going through the regex engine
+    private static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        var start = 0;
+        for (var end = text.indexOf('\n'); end >= 0; end = text.indexOf('\n', start)) {
+            lines.add(text.substring(start, end));
+            start = end + 1;
+        }
+        lines.add(text.substring(start));
+        if (lines.size() > 1 || !text.isEmpty()) {
+            while (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+                lines.remove(lines.size() - 1);
+            }
+        }
+        return Collections.unmodifiableList(lines);
+    }
 
 }
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class PostPage {
+
+    private List<Post> posts;
+    private Paging paging;
+
+}
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * New field values of a post, null means "leave as is".
+ */
+@Getter
+@Setter
+public class PostUpdate {
+
+    private String title;
+    private String text;
+    private String tags;
+    private ImageMetadata image;
+
+    public boolean isEmpty() {
+        return title == null && text == null && tags == null && image == null;
+    }
+
+}
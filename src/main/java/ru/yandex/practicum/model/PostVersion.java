@@ -0,0 +1,29 @@
+package ru.yandex.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * What the rendered post depends on: the version is bumped on every change of the post, its likes or comments.
+ * Likes still waiting in the write-behind buffer are not in the version yet.
+ */
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+public class PostVersion {
+
+    private Long id;
+    private long version;
+    private Instant modifiedAt;
+    @Setter
+    private long pendingLikes;
+
+    public PostVersion(Long id, long version, Instant modifiedAt) {
+        this(id, version, modifiedAt, 0);
+    }
+
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+public class TagQuery {
+
+    private static final char ANY_SEPARATOR = '|';
+
+    private final List<String> tags;
+    private final boolean matchAll;
+
+    // "java spring" finds posts having both tags, "java | spring" finds posts having any of them
+    public static TagQuery parse(String search) {
+        if (search == null || search.isBlank()) {
+            return new TagQuery(List.of(), true);
+        }
+        var matchAll = search.indexOf(ANY_SEPARATOR) < 0;
+        return new TagQuery(splitTags(search.replace(ANY_SEPARATOR, ' ')), matchAll);
+    }
+
+    public static List<String> splitTags(String tags) {
+        if (tags == null) {
+            return List.of();
+        }
+        Set<String> result = new LinkedHashSet<>();
+        var start = -1;
+        for (var i = 0; i <= tags.length(); i++) {
+            var separator = i == tags.length() || Character.isWhitespace(tags.charAt(i));
+            if (separator && start >= 0) {
+                result.add(tags.substring(start, i));
+                start = -1;
+            } else if (!separator && start < 0) {
+                start = i;
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    public boolean isEmpty() {
+        return tags.isEmpty();
+    }
+
+    public boolean matches(Collection<String> postTags) {
+        if (tags.isEmpty()) {
+            return true;
+        }
+        return matchAll ? postTags.containsAll(tags) : tags.stream().anyMatch(postTags::contains);
+    }
+
+}
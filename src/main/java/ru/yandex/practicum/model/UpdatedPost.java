@@ -0,0 +1,19 @@
+package ru.yandex.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+public class UpdatedPost {
+
+    // the fields that differed from the stored post and were written
+    private PostUpdate changes;
+    private List<String> oldTags;
+    private String oldImageHash;
+
+}
@@ -1,19 +1,33 @@
 package ru.yandex.practicum.repository;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.config.CacheConfig;
 import ru.yandex.practicum.model.Comment;
 
 import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Repository
+@Timed("blog.repository")
 @RequiredArgsConstructor
 public class CommentRepository {
 
     private final JdbcTemplate jdbcTemplate;
 
+    @Cacheable(cacheNames = CacheConfig.COMMENTS, key = "#postId")
     public List<Comment> findAllCommentsByPostId(Long postId) {
         return jdbcTemplate.query("select id, post_id, text from comment where post_id=?",
                 (rs, rowNum) -> new Comment(
@@ -23,10 +37,50 @@ public class CommentRepository {
                 ), postId);
     }
 
+    public Map<Long, List<Comment>> findAllCommentsByPostIds(Collection<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return Map.of();
+        }
+        var placeholders = String.join(", ", Collections.nCopies(postIds.size(), "?"));
+        return jdbcTemplate.query("select id, post_id, text from comment where post_id in (" + placeholders + ") order by id",
+                        (rs, rowNum) -> new Comment(
+                                rs.getLong("id"),
+                                rs.getLong("post_id"),
+                                rs.getString("text")
+                        ), postIds.toArray())
+                .stream()
+                .collect(Collectors.groupingBy(Comment::getPostId, LinkedHashMap::new, Collectors.toList()));
+    }
+
+    public Map<Long, Integer> countCommentsByPostIds(Collection<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return Map.of();
+        }
+        var placeholders = String.join(", ", Collections.nCopies(postIds.size(), "?"));
+        Map<Long, Integer> counts = new HashMap<>();
+        jdbcTemplate.query("select post_id, count(*) as comment_count from comment where post_id in (" + placeholders + ") group by post_id",
+                rs -> {
+                    counts.put(rs.getLong("post_id"), rs.getInt("comment_count"));
+                }, postIds.toArray());
+        return counts;
+    }
+
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.COMMENTS, key = "#postId"),
+            @CacheEvict(cacheNames = CacheConfig.POSTS, key = "#postId")
+    })
     public void deleteCommentsByPostId(Long postId) {
-        jdbcTemplate.update("delete from comment where post_id = ?", postId);
+        if (jdbcTemplate.update("delete from comment where post_id = ?", postId) > 0) {
+            bumpPostVersion(postId);
+        }
     }
 
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.COMMENTS, key = "#postId"),
+            @CacheEvict(cacheNames = CacheConfig.POSTS, key = "#postId")
+    })
     public void addComment(Long postId, String text) {
         jdbcTemplate.update(con -> {
             PreparedStatement statement = con.prepareStatement(
@@ -35,13 +89,34 @@ public class CommentRepository {
             statement.setString(2, text);
             return statement;
         });
+        bumpPostVersion(postId);
+    }
+
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.COMMENTS, key = "#postId"),
+            @CacheEvict(cacheNames = CacheConfig.POSTS, key = "#postId")
+    })
+    public void deleteCommentById(Long postId, Long commentId) {
+        if (jdbcTemplate.update("delete from comment where id = ? and post_id = ?", commentId, postId) > 0) {
+            bumpPostVersion(postId);
+        }
     }
 
-    public void deleteCommentById(Long commentId) {
-        jdbcTemplate.update("delete from comment where id = ?", commentId);
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.COMMENTS, key = "#postId"),
+            @CacheEvict(cacheNames = CacheConfig.POSTS, key = "#postId")
+    })
+    public void updateComment(Long postId, Long commentId, String text) {
+        if (jdbcTemplate.update("update comment set text = ? where id = ? and post_id = ?", text, commentId, postId) > 0) {
+            bumpPostVersion(postId);
+        }
     }
 
-    public void updateComment(Long commentId, String text) {
-        jdbcTemplate.update("update comment set text = ? where id = ?", text, commentId);
+    // comments are shown on the post page and counted in the feed; the cached post row carries the version, so
+    // every write here evicts it too
+    private void bumpPostVersion(Long postId) {
+        jdbcTemplate.update("update post set " + PostRepository.BUMP_VERSION + " where id = ?", postId);
     }
 }
@@ -0,0 +1,97 @@
+package ru.yandex.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.model.ImageMetadata;
+import ru.yandex.practicum.util.ImageInput;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.util.UUID;
+
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "blog.images.store.type", havingValue = "db", matchIfMissing = true)
+public class DatabaseImageStore implements ImageStore {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final SqlDialect sqlDialect;
+
+    // the hash is known only after the content has been sent, so it goes in under a temporary key first
+    @Override
+    @Transactional
+    public ImageMetadata save(InputStream image, long size) {
+        var input = new ImageInput(image, size);
+        var uploadKey = "upload-" + UUID.randomUUID();
+        jdbcTemplate.update(con -> {
+            PreparedStatement statement = con.prepareStatement("insert into image_blob (hash, content) values (?, ?)");
+            statement.setString(1, uploadKey);
+            statement.setBinaryStream(2, input, size);
+            return statement;
+        });
+        try {
+            // the driver stops after size bytes, reading one more fails if the image is larger than declared
+            input.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        var metadata = input.toMetadata();
+        // the image_lock row of the hash orders this with a concurrent upload of the same image and with its
+        // removal, so the check below holds until commit and the content is renamed, never copied
+        jdbcTemplate.update(sqlDialect.insertAndLock("image_lock", "hash"), metadata.getHash());
+        if (exists(metadata.getHash())) {
+            jdbcTemplate.update("delete from image_blob where hash = ?", uploadKey);
+        } else {
+            jdbcTemplate.update("update image_blob set hash = ? where hash = ?", metadata.getHash(), uploadKey);
+        }
+        return metadata;
+    }
+
+    @Override
+    public InputStream open(String hash) {
+        return jdbcTemplate.query("select content from image_blob where hash = ?",
+                        (rs, rowNum) -> rs.getBytes("content"), hash).stream()
+                .findFirst()
+                .map(ByteArrayInputStream::new)
+                .orElse(null);
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return !jdbcTemplate.queryForList("select hash from image_blob where hash = ?", String.class, hash).isEmpty();
+    }
+
+    @Override
+    public void write(String hash, long offset, long length, OutputStream out) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement statement = con.prepareStatement(
+                    "select substring(content from ? for ?) as content from image_blob where hash = ?");
+            statement.setInt(1, Math.toIntExact(offset + 1));
+            statement.setInt(2, Math.toIntExact(length));
+            statement.setString(3, hash);
+            return statement;
+        }, rs -> {
+            try (InputStream image = rs.getBinaryStream("content")) {
+                if (image != null) {
+                    image.transferTo(out);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void delete(String hash) {
+        jdbcTemplate.update("delete from image_blob where hash = ?", hash);
+    }
+
+}
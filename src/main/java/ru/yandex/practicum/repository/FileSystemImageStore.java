@@ -0,0 +1,130 @@
+package ru.yandex.practicum.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.model.ImageMetadata;
+import ru.yandex.practicum.util.ImageInput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps every image in its own file, {@code <root>/ab/cd/abcd...} for hash {@code abcd...}. Uploads are streamed
+ * to a temporary file and moved in place once their hash is known, so a file under its final name is always complete.
+ */
+@Repository
+@ConditionalOnProperty(name = "blog.images.store.type", havingValue = "fs")
+public class FileSystemImageStore implements ImageStore {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+
+    public FileSystemImageStore(@Value("${blog.images.store.path:images}") Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public ImageMetadata save(InputStream image, long size) {
+        try {
+            Files.createDirectories(root);
+            var temp = Files.createTempFile(root, "upload", ".tmp");
+            try {
+                var input = new ImageInput(image, size);
+                try (var source = Channels.newChannel(input); var channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                    while (source.read(buffer) >= 0) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                    channel.force(true);
+                }
+                var metadata = input.toMetadata();
+                var file = path(metadata.getHash());
+                if (!Files.exists(file)) {
+                    Files.createDirectories(file.getParent());
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+                }
+                return metadata;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public InputStream open(String hash) {
+        var file = path(hash);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return Files.newInputStream(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return Files.exists(path(hash));
+    }
+
+    @Override
+    public void write(String hash, long offset, long length, OutputStream out) {
+        try (var channel = FileChannel.open(path(hash), StandardOpenOption.READ)) {
+            var target = Channels.newChannel(out);
+            var position = offset;
+            var end = Math.min(offset + length, channel.size());
+            while (position < end) {
+                position += channel.transferTo(position, end - position, target);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void delete(String hash) {
+        try {
+            Files.deleteIfExists(path(hash));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Path findFile(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            return null;
+        }
+        var file = path(hash);
+        return Files.exists(file) ? file.toAbsolutePath() : null;
+    }
+
+    private Path path(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Not a SHA-256 hex hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+}
@@ -0,0 +1,52 @@
+package ru.yandex.practicum.repository;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Images are shared by content, so the check that no post uses an image and its removal must not interleave with
+ * a post starting to use the same image. Both sides lock the image's image_lock row first: a removal waits for
+ * the post to commit and then sees it, a post waits for the removal and then finds the image gone.
+ */
+@Repository
+@Timed("blog.repository")
+@RequiredArgsConstructor
+public class ImageLockRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ImageStore imageStore;
+
+    private final SqlDialect sqlDialect;
+
+    // called by the transaction that makes a post use the image, fails when the image was removed after it was stored
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void lockForUse(String hash) {
+        lock(hash);
+        if (!imageStore.exists(hash)) {
+            throw new ConcurrencyFailureException("Image " + hash + " was removed before a post could use it");
+        }
+    }
+
+    @Transactional
+    public boolean deleteIfUnused(String hash) {
+        lock(hash);
+        // a new statement after the lock, so it sees the posts committed while the lock was waited for
+        if (!jdbcTemplate.queryForList("select id from post where image_hash = ? limit 1", Long.class, hash).isEmpty()) {
+            return false;
+        }
+        imageStore.delete(hash);
+        jdbcTemplate.update("delete from image_lock where hash = ?", hash);
+        return true;
+    }
+
+    private void lock(String hash) {
+        jdbcTemplate.update(sqlDialect.insertAndLock("image_lock", "hash"), hash);
+    }
+
+}
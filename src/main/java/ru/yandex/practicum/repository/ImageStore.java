@@ -0,0 +1,38 @@
+package ru.yandex.practicum.repository;
+
+import ru.yandex.practicum.model.ImageMetadata;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Image content keyed by its SHA-256 hex hash. Saving the same content twice stores it once, so a stored image
+ * may be shared by several posts.
+ */
+public interface ImageStore {
+
+    /**
+     * Stores an image of the given size while reading it, without buffering it in memory.
+     */
+    ImageMetadata save(InputStream image, long size);
+
+    /**
+     * The stored image, null when there is none with this hash.
+     */
+    InputStream open(String hash);
+
+    boolean exists(String hash);
+
+    void write(String hash, long offset, long length, OutputStream out);
+
+    void delete(String hash);
+
+    /**
+     * The file holding the image when the store keeps images as plain files, null otherwise.
+     */
+    default Path findFile(String hash) {
+        return null;
+    }
+
+}
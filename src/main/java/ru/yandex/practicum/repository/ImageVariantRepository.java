@@ -0,0 +1,103 @@
+package ru.yandex.practicum.repository;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.model.ImageMetadata;
+import ru.yandex.practicum.model.ImageVariant;
+import ru.yandex.practicum.util.Images;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resized copies of post images. A variant row is only used while its source_hash matches post.image_hash,
+ * so variants of a replaced image are ignored until they are regenerated. A row without an image means the
+ * original should be served (it is small enough already or could not be decoded).
+ */
+@Repository
+@Timed("blog.repository")
+@RequiredArgsConstructor
+public class ImageVariantRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public void saveVariants(Long postId, String sourceHash, Map<ImageVariant, byte[]> images) {
+        jdbcTemplate.update("delete from post_image_variant where post_id = ?", postId);
+        var variants = new ArrayList<>(images.entrySet());
+        jdbcTemplate.batchUpdate(
+                "insert into post_image_variant (post_id, variant, source_hash, image, image_content_type, image_hash, image_size) "
+                        + "values (?, ?, ?, ?, ?, ?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        var image = variants.get(i).getValue();
+                        statement.setLong(1, postId);
+                        statement.setString(2, variants.get(i).getKey().getValue());
+                        statement.setString(3, sourceHash);
+                        statement.setBytes(4, image);
+                        statement.setString(5, Images.detectContentType(image));
+                        statement.setString(6, Images.sha256Hex(image));
+                        statement.setObject(7, image == null ? null : (long) image.length, Types.BIGINT);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return variants.size();
+                    }
+                });
+    }
+
+    public ImageMetadata findVariantMetadata(Long postId, ImageVariant variant) {
+        return jdbcTemplate.query(
+                "select v.image_content_type, v.image_hash, v.image_size from post_image_variant v "
+                        + "join post p on p.id = v.post_id "
+                        + "where v.post_id = ? and v.variant = ? and v.source_hash = p.image_hash",
+                (rs, rowNum) -> new ImageMetadata(
+                        rs.getString("image_content_type"),
+                        rs.getString("image_hash"),
+                        rs.getObject("image_size", Long.class)
+                ), postId, variant.getValue()).stream().findFirst().orElse(null);
+    }
+
+    public void writeVariant(Long postId, ImageVariant variant, long offset, long length, OutputStream out) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement statement = con.prepareStatement(
+                    "select substring(image from ? for ?) as image from post_image_variant where post_id = ? and variant = ?");
+            statement.setInt(1, Math.toIntExact(offset + 1));
+            statement.setInt(2, Math.toIntExact(length));
+            statement.setLong(3, postId);
+            statement.setString(4, variant.getValue());
+            return statement;
+        }, rs -> {
+            try (InputStream image = rs.getBinaryStream("image")) {
+                if (image != null) {
+                    image.transferTo(out);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public List<Long> findPostIdsWithoutVariants(long afterPostId, int limit) {
+        return jdbcTemplate.queryForList(
+                "select p.id from post p where p.id > ? and p.image_hash is not null and not exists ("
+                        + "select 1 from post_image_variant v where v.post_id = p.id and v.source_hash = p.image_hash"
+                        + ") order by p.id limit ?",
+                Long.class, afterPostId, limit);
+    }
+
+}
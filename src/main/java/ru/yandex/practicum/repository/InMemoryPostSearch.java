@@ -0,0 +1,238 @@
+package ru.yandex.practicum.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.model.SearchHit;
+import ru.yandex.practicum.util.Snippets;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index kept in memory, for databases without full-text search (H2). Built from the post table on first
+ * use. Words are compared lowercased without stemming; a title word counts twice as much as a text word.
+ */
+@Repository
+@ConditionalOnProperty(name = "blog.search.type", havingValue = "memory")
+public class InMemoryPostSearch implements PostSearch {
+
+    private static final int TITLE_WEIGHT = 2;
+
+    private static final int SNIPPET_WORDS = 30;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // word -> post id -> weighted number of occurrences
+    private final Map<String, Map<Long, Integer>> index = new HashMap<>();
+
+    private final Map<Long, Set<String>> postWords = new HashMap<>();
+
+    private final Map<Long, String> texts = new HashMap<>();
+
+    private volatile boolean loaded;
+
+    public InMemoryPostSearch(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<SearchHit> search(String query, int limit, long offset) {
+        var words = new LinkedHashSet<>(words(query));
+        load();
+        lock.readLock().lock();
+        try {
+            var scores = score(words);
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .skip(offset)
+                    .limit(limit)
+                    .map(e -> new SearchHit(e.getKey(), snippet(texts.get(e.getKey()), words)))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int count(String query) {
+        load();
+        lock.readLock().lock();
+        try {
+            return score(new LinkedHashSet<>(words(query))).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void postChanged(Long postId) {
+        var rows = jdbcTemplate.query("select title, text from post where id = ?",
+                (rs, rowNum) -> new String[]{rs.getString("title"), rs.getString("text")}, postId);
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                remove(postId);
+                rows.forEach(row -> add(postId, row[0], row[1]));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void postDeleted(Long postId) {
+        lock.writeLock().lock();
+        try {
+            remove(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            postWords.clear();
+            texts.clear();
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                jdbcTemplate.query("select id, title, text from post",
+                        rs -> {
+                            add(rs.getLong("id"), rs.getString("title"), rs.getString("text"));
+                        });
+                loaded = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // posts having every word, with the sum of their weights
+    private Map<Long, Integer> score(Set<String> words) {
+        Map<Long, Integer> scores = null;
+        for (var word : words) {
+            var postings = index.getOrDefault(word, Map.of());
+            if (scores == null) {
+                scores = new HashMap<>(postings);
+            } else {
+                scores.keySet().retainAll(postings.keySet());
+                scores.replaceAll((postId, score) -> score + postings.get(postId));
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores == null ? Map.of() : scores;
+    }
+
+    private void add(Long postId, String title, String text) {
+        Map<String, Integer> counts = new HashMap<>();
+        words(title).forEach(word -> counts.merge(word, TITLE_WEIGHT, Integer::sum));
+        words(text).forEach(word -> counts.merge(word, 1, Integer::sum));
+        counts.forEach((word, count) -> index.computeIfAbsent(word, w -> new HashMap<>()).put(postId, count));
+        postWords.put(postId, counts.keySet());
+        texts.put(postId, text);
+    }
+
+    private void remove(Long postId) {
+        var words = postWords.remove(postId);
+        if (words != null) {
+            for (var word : words) {
+                var postings = index.get(word);
+                postings.remove(postId);
+                if (postings.isEmpty()) {
+                    index.remove(word);
+                }
+            }
+        }
+        texts.remove(postId);
+    }
+
+    // the words around the first match, or the beginning of the text when only the title matched
+    private static String snippet(String text, Set<String> words) {
+        if (text == null) {
+            return null;
+        }
+        var bounds = wordBounds(text);
+        if (bounds.isEmpty()) {
+            return text;
+        }
+        var first = 0;
+        for (var i = 0; i < bounds.size(); i++) {
+            if (words.contains(word(text, bounds.get(i)))) {
+                first = Math.max(0, i - SNIPPET_WORDS / 3);
+                break;
+            }
+        }
+        var last = Math.min(bounds.size(), first + SNIPPET_WORDS);
+        var snippet = new StringBuilder(first > 0 ? "... " : "");
+        for (var i = first; i < last; i++) {
+            var word = bounds.get(i);
+            if (i > first) {
+                snippet.append(text, bounds.get(i - 1)[1], word[0]);
+            }
+            var matched = words.contains(word(text, word));
+            if (matched) {
+                snippet.append(Snippets.START);
+            }
+            snippet.append(text, word[0], word[1]);
+            if (matched) {
+                snippet.append(Snippets.STOP);
+            }
+        }
+        if (last < bounds.size()) {
+            return snippet.append(" ...").toString();
+        }
+        return snippet.append(text, bounds.get(last - 1)[1], text.length()).toString();
+    }
+
+    private static List<String> words(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        return wordBounds(text).stream().map(bounds -> word(text, bounds)).toList();
+    }
+
+    private static String word(String text, int[] bounds) {
+        return text.substring(bounds[0], bounds[1]).toLowerCase(Locale.ROOT);
+    }
+
+    private static List<int[]> wordBounds(String text) {
+        List<int[]> bounds = new ArrayList<>();
+        var start = -1;
+        for (var i = 0; i <= text.length(); i++) {
+            var letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                bounds.add(new int[]{start, i});
+                start = -1;
+            }
+        }
+        return bounds;
+    }
+
+}
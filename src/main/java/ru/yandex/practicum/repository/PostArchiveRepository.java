@@ -0,0 +1,108 @@
+package ru.yandex.practicum.repository;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.model.ArchivedPost;
+import ru.yandex.practicum.model.ImageMetadata;
+import ru.yandex.practicum.model.TagQuery;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Batched reads and writes for archive import and export. Writes go around {@link PostRepository}, so callers
+ * invalidate the caches and the search index afterwards.
+ */
+@Repository
+@Timed("blog.repository")
+@RequiredArgsConstructor
+public class PostArchiveRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final SqlDialect sqlDialect;
+
+    private final ImageLockRepository imageLockRepository;
+
+    // one statement per table and batch instead of a round-trip per post, comment and tag
+    @Transactional
+    public List<Long> insertPosts(List<ArchivedPost> posts, List<ImageMetadata> images) {
+        images.stream().filter(Objects::nonNull).map(ImageMetadata::getHash).distinct().sorted()
+                .forEach(imageLockRepository::lockForUse);
+        var holder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(
+                        "insert into post (title, image_content_type, image_hash, image_size, text, tags, likes_count) "
+                                + "values (?, ?, ?, ?, ?, ?, ?)", new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        var post = posts.get(i);
+                        var image = images.get(i);
+                        statement.setString(1, post.getTitle());
+                        statement.setString(2, image == null ? null : image.getContentType());
+                        statement.setString(3, image == null ? null : image.getHash());
+                        statement.setObject(4, image == null ? null : image.getSize(), Types.BIGINT);
+                        statement.setString(5, post.getText());
+                        statement.setString(6, post.getTags());
+                        statement.setInt(7, post.getLikesCount() == null ? 0 : post.getLikesCount());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return posts.size();
+                    }
+                },
+                holder);
+        List<Long> postIds = holder.getKeyList().stream().map(keys -> ((Number) keys.get("id")).longValue()).toList();
+
+        List<Object[]> comments = new ArrayList<>();
+        Set<String> tagNames = new LinkedHashSet<>();
+        List<Object[]> postTags = new ArrayList<>();
+        for (int i = 0; i < posts.size(); i++) {
+            var postId = postIds.get(i);
+            var post = posts.get(i);
+            if (post.getComments() != null) {
+                post.getComments().forEach(text -> comments.add(new Object[]{postId, text}));
+            }
+            for (var name : TagQuery.splitTags(post.getTags())) {
+                tagNames.add(name);
+                postTags.add(new Object[]{postId, name});
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into comment (post_id, text) values (?, ?)", comments);
+        jdbcTemplate.batchUpdate(sqlDialect.insertIfAbsent("tag", "name", "name", "values (?)"),
+                tagNames.stream().map(name -> new Object[]{name}).toList());
+        jdbcTemplate.batchUpdate("insert into post_tag (post_id, tag_id) select cast(? as bigint), id from tag where name = ?",
+                postTags);
+        return postIds;
+    }
+
+    public List<ArchivedPost> findPostsAfter(long afterId, int limit) {
+        return jdbcTemplate.query(
+                "select id, title, text, tags, likes_count, image_content_type, image_hash from post where id > ? order by id limit ?",
+                (rs, rowNum) -> {
+                    var post = new ArchivedPost();
+                    post.setId(rs.getLong("id"));
+                    post.setTitle(rs.getString("title"));
+                    post.setText(rs.getString("text"));
+                    post.setTags(rs.getString("tags"));
+                    post.setLikesCount(rs.getInt("likes_count"));
+                    post.setImageContentType(rs.getString("image_content_type"));
+                    post.setImageHash(rs.getString("image_hash"));
+                    return post;
+                }, afterId, limit);
+    }
+
+}
@@ -1,106 +1,493 @@
 package ru.yandex.practicum.repository;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.config.CacheConfig;
+import ru.yandex.practicum.model.DeletedPost;
+import ru.yandex.practicum.model.ImageMetadata;
 import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.model.PostUpdate;
+import ru.yandex.practicum.model.PostVersion;
+import ru.yandex.practicum.model.SearchHit;
+import ru.yandex.practicum.model.TagQuery;
+import ru.yandex.practicum.model.UpdatedPost;
+import ru.yandex.practicum.util.Snippets;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
 
 @Repository
+@Timed("blog.repository")
 @RequiredArgsConstructor
 public class PostRepository {
 
-    private final JdbcTemplate jdbcTemplate;
+    // set on every update of what the post and feed pages show
+    public static final String BUMP_VERSION = "version = version + 1, modified_at = current_timestamp";
 
-    public List<Post> findAll(String search, int pageNumber, int pageSize) {
-        List<Post> result;
-        var offset = pageSize * (pageNumber - 1);
-        RowMapper<Post> postRowMapper = (rs, rwNum) -> new Post(
+    private static final RowMapper<Post> POST_ROW_MAPPER = (rs, rowNum) -> {
+        var post = new Post(
                 rs.getLong("id"),
                 rs.getString("title"),
-                rs.getBytes("image"),
+                null,
                 rs.getString("text"),
                 rs.getString("tags"),
                 rs.getInt("likes_count"));
-        if ("".equals(search)) {
-            result = jdbcTemplate.query(
-                    "select id, title, image, text, tags, likes_count from post limit ? offset ?",
-                    postRowMapper,
+        post.setVersion(rs.getLong("version"));
+        return post;
+    };
+
+    private static final String POST_COLUMNS = "id, title, text, tags, likes_count, version";
+
+    private static final String VERSION_COLUMNS = "id, version, modified_at";
+
+    private static final RowMapper<PostVersion> VERSION_ROW_MAPPER = (rs, rowNum) -> new PostVersion(
+            rs.getLong("id"),
+            rs.getLong("version"),
+            rs.getTimestamp("modified_at").toInstant());
+
+    private static final RowMapper<DeletedPost> DELETED_POST_ROW_MAPPER = (rs, rowNum) -> new DeletedPost(
+            rs.getLong("id"),
+            TagQuery.splitTags(rs.getString("tags")),
+            rs.getString("image_hash"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ImageStore imageStore;
+
+    private final ImageLockRepository imageLockRepository;
+
+    private final PostSearch postSearch;
+
+    private final SqlDialect sqlDialect;
+
+    @Cacheable(cacheNames = CacheConfig.FEEDS, key = "{'page', #search, #pageNumber, #pageSize}")
+    public List<Post> findAll(String search, int pageNumber, int pageSize) {
+        return findPage(POST_COLUMNS, POST_ROW_MAPPER, search, pageNumber, pageSize);
+    }
+
+    @Cacheable(cacheNames = CacheConfig.FEEDS, key = "{'after', #search, #afterId, #limit}")
+    public List<Post> findAllAfter(String search, long afterId, int limit) {
+        return findAllByKey(POST_COLUMNS, POST_ROW_MAPPER, search, "id > ?", "id", afterId, limit);
+    }
+
+    @Cacheable(cacheNames = CacheConfig.FEEDS, key = "{'before', #search, #beforeId, #limit}")
+    public List<Post> findAllBefore(String search, long beforeId, int limit) {
+        var result = new ArrayList<>(findAllByKey(POST_COLUMNS, POST_ROW_MAPPER, search, "id < ?", "id desc", beforeId, limit));
+        Collections.reverse(result);
+        return result;
+    }
+
+    // the versions of the posts findAll / findAllAfter / findAllBefore would return, never cached
+    public List<PostVersion> findVersions(String search, int pageNumber, int pageSize) {
+        return findPage(VERSION_COLUMNS, VERSION_ROW_MAPPER, search, pageNumber, pageSize);
+    }
+
+    public List<PostVersion> findVersionsAfter(String search, long afterId, int limit) {
+        return findAllByKey(VERSION_COLUMNS, VERSION_ROW_MAPPER, search, "id > ?", "id", afterId, limit);
+    }
+
+    public List<PostVersion> findVersionsBefore(String search, long beforeId, int limit) {
+        return findAllByKey(VERSION_COLUMNS, VERSION_ROW_MAPPER, search, "id < ?", "id desc", beforeId, limit);
+    }
+
+    public PostVersion findVersion(Long postId) {
+        return jdbcTemplate.query("select " + VERSION_COLUMNS + " from post where id = ?", VERSION_ROW_MAPPER, postId)
+                .stream().findFirst().orElse(null);
+    }
+
+    private <T> List<T> findPage(String columns, RowMapper<T> rowMapper, String search, int pageNumber, int pageSize) {
+        var offset = pageSize * (pageNumber - 1);
+        var tags = TagQuery.parse(search);
+        if (tags.isEmpty()) {
+            return jdbcTemplate.query(
+                    "select " + columns + " from post order by id limit ? offset ?",
+                    rowMapper,
                     pageSize,
                     offset
             );
-        } else {
-            result = jdbcTemplate.query(
-                    "select id, title, image, text, tags, likes_count from post where tags like ? limit ? offset ?",
-                    postRowMapper,
-                    "%" + search + "%",
-                    pageSize,
-                    offset
+        }
+        var args = tagArgs(tags);
+        args.add(pageSize);
+        args.add(offset);
+        return jdbcTemplate.query(
+                "select " + columns + " from post where " + tagCondition(tags) + " order by id limit ? offset ?",
+                rowMapper,
+                args.toArray()
+        );
+    }
+
+    private <T> List<T> findAllByKey(String columns, RowMapper<T> rowMapper, String search, String keyCondition,
+                                     String order, long key, int limit) {
+        var tags = TagQuery.parse(search);
+        if (tags.isEmpty()) {
+            return jdbcTemplate.query(
+                    "select " + columns + " from post where " + keyCondition + " order by " + order + " limit ?",
+                    rowMapper,
+                    key,
+                    limit
             );
         }
+        var args = tagArgs(tags);
+        args.add(key);
+        args.add(limit);
+        return jdbcTemplate.query(
+                "select " + columns + " from post where " + tagCondition(tags) + " and " + keyCondition
+                        + " order by " + order + " limit ?",
+                rowMapper,
+                args.toArray()
+        );
+    }
+
+    // ranked by relevance, each post carries the highlighted snippet instead of the plain preview
+    @Cacheable(cacheNames = CacheConfig.FEEDS, key = "{'text', #query, #pageNumber, #pageSize}")
+    public List<Post> findAllByText(String query, int pageNumber, int pageSize) {
+        var hits = postSearch.search(query, pageSize, (long) pageSize * (pageNumber - 1));
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Post> posts = new HashMap<>();
+        jdbcTemplate.query("select " + POST_COLUMNS + " from post where id in (" + placeholders(hits.size()) + ")",
+                        POST_ROW_MAPPER, hits.stream().map(SearchHit::getPostId).toArray())
+                .forEach(post -> posts.put(post.getId(), post));
+        List<Post> result = new ArrayList<>();
+        for (var hit : hits) {
+            var post = posts.get(hit.getPostId());
+            if (post != null) {
+                post.setSnippet(Snippets.toHtml(hit.getSnippet()));
+                result.add(post);
+            }
+        }
         return result;
     }
 
-    public long savePost(String title, byte[] image, String tags, String text) {
+    public int getPostCountByText(String query) {
+        return postSearch.count(query);
+    }
+
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.FEEDS, allEntries = true)
+    public long savePost(String title, ImageMetadata image, String tags, String text) {
+        if (image != null) {
+            imageLockRepository.lockForUse(image.getHash());
+        }
         GeneratedKeyHolder holder = new GeneratedKeyHolder();
 
         jdbcTemplate.update(con -> {
             PreparedStatement statement = con.prepareStatement(
-                    "insert into post (title, image, text, tags) values (?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+                    "insert into post (title, image_content_type, image_hash, image_size, text, tags) values (?, ?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
             statement.setString(1, title);
-            statement.setBytes(2, image);
-            statement.setString(3, text);
-            statement.setString(4, tags);
+            statement.setString(2, image == null ? null : image.getContentType());
+            statement.setString(3, image == null ? null : image.getHash());
+            statement.setObject(4, image == null ? null : image.getSize(), Types.BIGINT);
+            statement.setString(5, text);
+            statement.setString(6, tags);
             return statement;
         }, holder);
 
-        return (Long) holder.getKeys().get("id");
+        var postId = (Long) holder.getKeys().get("id");
+        saveTags(postId, tags);
+        postSearch.postChanged(postId);
+        return postId;
     }
 
-    public void updatePost(Post post) {
-        jdbcTemplate.update(con -> {
-            PreparedStatement statement = con.prepareStatement("update post set title = ?, image = ?, text = ?, tags = ?, likes_count = ? where id = ?");
-            statement.setString(1, post.getTitle());
-            statement.setBytes(2, post.getImage());
-            statement.setString(3, post.getText());
-            statement.setString(4, post.getTagsAsText());
-            statement.setInt(5, post.getLikesCount());
-            statement.setLong(6, post.getId());
-            return statement;
-        });
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.POSTS, key = "#postId"),
+            @CacheEvict(cacheNames = CacheConfig.FEEDS, allEntries = true)
+    })
+    public UpdatedPost updatePost(Long postId, PostUpdate update) {
+        // compared with the row locked for the write, never with a cached post that may be stale
+        var rows = jdbcTemplate.queryForList("select title, text, tags, image_hash from post where id = ? for update", postId);
+        if (rows.isEmpty()) {
+            throw new NoSuchElementException("Post " + postId + " not found");
+        }
+        var current = rows.get(0);
+        var changes = new PostUpdate();
+        List<String> columns = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (update.getTitle() != null && !update.getTitle().equals(current.get("title"))) {
+            changes.setTitle(update.getTitle());
+            columns.add("title = ?");
+            args.add(update.getTitle());
+        }
+        if (update.getText() != null && !update.getText().equals(current.get("text"))) {
+            changes.setText(update.getText());
+            columns.add("text = ?");
+            args.add(update.getText());
+        }
+        if (update.getTags() != null && !update.getTags().equals(current.get("tags"))) {
+            changes.setTags(update.getTags());
+            columns.add("tags = ?");
+            args.add(update.getTags());
+        }
+        if (update.getImage() != null && !update.getImage().getHash().equals(current.get("image_hash"))) {
+            imageLockRepository.lockForUse(update.getImage().getHash());
+            changes.setImage(update.getImage());
+            columns.add("image = null, image_content_type = ?, image_hash = ?, image_size = ?");
+            args.add(update.getImage().getContentType());
+            args.add(update.getImage().getHash());
+            args.add(update.getImage().getSize());
+        }
+        var updated = new UpdatedPost(changes, TagQuery.splitTags((String) current.get("tags")),
+                (String) current.get("image_hash"));
+        if (columns.isEmpty()) {
+            return updated;
+        }
+        columns.add(BUMP_VERSION);
+        args.add(postId);
+        jdbcTemplate.update("update post set " + String.join(", ", columns) + " where id = ?", args.toArray());
+        if (changes.getTags() != null) {
+            saveTags(postId, changes.getTags());
+        }
+        if (changes.getTitle() != null || changes.getText() != null) {
+            postSearch.postChanged(postId);
+        }
+        return updated;
+    }
+
+    // one transaction, the row stays locked from the update to the select, so the count includes only this change
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.POSTS, key = "#postId"),
+            @CacheEvict(cacheNames = CacheConfig.FEEDS, allEntries = true)
+    })
+    public int addLikesCount(Long postId, int delta) {
+        var updated = jdbcTemplate.update("update post set likes_count = likes_count + ?, " + BUMP_VERSION + " where id = ?",
+                delta, postId);
+        if (updated == 0) {
+            throw new NoSuchElementException("Post " + postId + " not found");
+        }
+        return jdbcTemplate.queryForObject("select likes_count from post where id = ?", Integer.class, postId);
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.FEEDS, allEntries = true)
+    public void addLikesCounts(Map<Long, Long> deltas) {
+        jdbcTemplate.batchUpdate("update post set likes_count = likes_count + ?, " + BUMP_VERSION + " where id = ?",
+                deltas.entrySet().stream()
+                        .map(e -> new Object[]{e.getValue(), e.getKey()})
+                        .toList());
     }
 
+    @Cacheable(cacheNames = CacheConfig.POSTS, key = "#postId")
     public Post findById(Long postId) throws Exception {
-        return jdbcTemplate.query("select id, title, image, text, tags, likes_count from post where id=?",
-                (rs, rowNum) -> new Post(
-                     rs.getLong("id"),
-                     rs.getString("title"),
-                     rs.getBytes("image"),
-                     rs.getString("text"),
-                     rs.getString("tags"),
-                     rs.getInt("likes_count")
+        return jdbcTemplate.query("select " + POST_COLUMNS + " from post where id=?",
+                POST_ROW_MAPPER, postId).stream().findFirst().orElseThrow();
+    }
+
+    public byte[] findImageById(Long postId) throws Exception {
+        var images = jdbcTemplate.query("select image, image_hash from post where id=?",
+                (rs, rowNum) -> {
+                    // images saved before the image store was introduced are still kept in the post row
+                    var image = rs.getBytes("image");
+                    var hash = rs.getString("image_hash");
+                    return image != null || hash == null ? image : readStoredImage(hash);
+                }, postId);
+        if (images.isEmpty()) {
+            throw new NoSuchElementException("Post " + postId + " not found");
+        }
+        return images.get(0);
+    }
+
+    public ImageMetadata saveImage(InputStream image, long size) {
+        return imageStore.save(image, size);
+    }
+
+    // the image of the post if it still has the given hash, null otherwise
+    public InputStream openImage(Long postId, String hash) {
+        var images = jdbcTemplate.query("select image from post where id = ? and image_hash = ?",
+                (rs, rowNum) -> Optional.ofNullable(rs.getBytes("image")), postId, hash);
+        if (images.isEmpty()) {
+            return null;
+        }
+        return images.get(0).<InputStream>map(ByteArrayInputStream::new).orElseGet(() -> imageStore.open(hash));
+    }
+
+    public ImageMetadata findImageMetadata(Long postId) throws Exception {
+        return jdbcTemplate.query(
+                "select image_content_type, image_hash, coalesce(image_size, octet_length(image)) as image_size from post where id=?",
+                (rs, rowNum) -> new ImageMetadata(
+                        rs.getString("image_content_type"),
+                        rs.getString("image_hash"),
+                        rs.getObject("image_size", Long.class)
                 ), postId).stream().findFirst().orElseThrow();
     }
 
+    public void writeImage(Long postId, long offset, long length, OutputStream out) {
+        var storedHash = jdbcTemplate.query(con -> {
+            PreparedStatement statement = con.prepareStatement(
+                    "select substring(image from ? for ?) as image, image_hash from post where id = ?");
+            statement.setInt(1, Math.toIntExact(offset + 1));
+            statement.setInt(2, Math.toIntExact(length));
+            statement.setLong(3, postId);
+            return statement;
+        }, rs -> {
+            if (!rs.next()) {
+                return null;
+            }
+            try (InputStream image = rs.getBinaryStream("image")) {
+                if (image != null) {
+                    image.transferTo(out);
+                    return null;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return rs.getString("image_hash");
+        });
+        if (storedHash != null) {
+            imageStore.write(storedHash, offset, length, out);
+        }
+    }
+
+    // moves images kept in the post row to the image store, returns how many were moved
+    @Transactional
+    public int moveImagesToStore(int limit) {
+        var images = jdbcTemplate.query("select id, image from post where image is not null order by id limit ?",
+                (rs, rowNum) -> Map.entry(rs.getLong("id"), rs.getBytes("image")), limit);
+        for (var image : images) {
+            var stored = imageStore.save(new ByteArrayInputStream(image.getValue()), image.getValue().length);
+            imageLockRepository.lockForUse(stored.getHash());
+            jdbcTemplate.update("update post set image = null, image_hash = ?, image_size = ?, "
+                            + "image_content_type = coalesce(image_content_type, ?) where id = ? and image is not null",
+                    stored.getHash(), stored.getSize(), stored.getContentType(), image.getKey());
+        }
+        return images.size();
+    }
+
+    private byte[] readStoredImage(String hash) {
+        try (var image = imageStore.open(hash)) {
+            return image == null ? null : image.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Path findImageFile(String hash) {
+        return hash == null ? null : imageStore.findFile(hash);
+    }
+
     public int getPostCount(String search) {
-        int postCount;
-        if ("".equals(search)) {
-            postCount = jdbcTemplate.queryForObject("select count(1) as count from post", Integer.class);
-        } else {
-            postCount = jdbcTemplate.queryForObject("select count(1) as count from post where tags like ?",
-                    Integer.class,
-                    "%" + search + "%"
-            );
+        var tags = TagQuery.parse(search);
+        if (tags.isEmpty()) {
+            return jdbcTemplate.queryForObject("select count(1) as count from post", Integer.class);
         }
-        return postCount;
+        return jdbcTemplate.queryForObject("select count(1) as count from post where " + tagCondition(tags),
+                Integer.class,
+                tagArgs(tags).toArray()
+        );
     }
 
-    public void delete(Long postId) {
+    public long estimatePostCount() {
+        var estimates = jdbcTemplate.queryForList(
+                "select cast(reltuples as bigint) from pg_class where relname = 'post'", Long.class);
+        return estimates.isEmpty() ? -1 : estimates.get(0);
+    }
+
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.POSTS, key = "#postId"),
+            @CacheEvict(cacheNames = CacheConfig.FEEDS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.COMMENTS, key = "#postId")
+    })
+    @Transactional
+    public DeletedPost delete(Long postId) {
+        // locked, so of two concurrent deletes of the post only the first one gets it back
+        var deleted = jdbcTemplate.query("select id, tags, image_hash from post where id = ? for update",
+                DELETED_POST_ROW_MAPPER, postId);
+        if (deleted.isEmpty()) {
+            return null;
+        }
+        // comments, tags and image variants go with the post (on delete cascade)
         jdbcTemplate.update("delete from post where id = ?", postId);
+        postSearch.postDeleted(postId);
+        return deleted.get(0);
+    }
+
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.POSTS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.FEEDS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.COMMENTS, allEntries = true)
+    })
+    public List<DeletedPost> deletePosts(Collection<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return List.of();
+        }
+        var in = "id in (" + placeholders(postIds.size()) + ")";
+        var deleted = jdbcTemplate.query("select id, tags, image_hash from post where " + in + " for update",
+                DELETED_POST_ROW_MAPPER, postIds.toArray());
+        jdbcTemplate.update("delete from post where " + in, postIds.toArray());
+        deleted.forEach(post -> postSearch.postDeleted(post.getId()));
+        return deleted;
+    }
+
+    public List<Long> findPostIdsByTag(String tag, int limit) {
+        return jdbcTemplate.queryForList(
+                "select pt.post_id from post_tag pt join tag t on t.id = pt.tag_id where t.name = ? order by pt.post_id limit ?",
+                Long.class, tag, limit);
+    }
+
+    // images are shared by content, so one is removed only when no post refers to it any more; call it after
+    // the delete has committed. Every image is checked and removed in its own transaction, see ImageLockRepository.
+    public void deleteUnusedImages(Collection<String> hashes) {
+        hashes.stream().filter(Objects::nonNull).distinct().forEach(imageLockRepository::deleteIfUnused);
+    }
+
+    private void saveTags(long postId, String tags) {
+        jdbcTemplate.update("delete from post_tag where post_id = ?", postId);
+        var names = TagQuery.splitTags(tags);
+        if (names.isEmpty()) {
+            return;
+        }
+        // posts saved at the same time may both add a new tag
+        jdbcTemplate.batchUpdate(sqlDialect.insertIfAbsent("tag", "name", "name", "values (?)"),
+                names.stream().map(name -> new Object[]{name}).toList());
+        List<Object> args = new ArrayList<>();
+        args.add(postId);
+        args.addAll(names);
+        jdbcTemplate.update("insert into post_tag (post_id, tag_id) select cast(? as bigint), id from tag where name in ("
+                + placeholders(names.size()) + ")", args.toArray());
+    }
+
+    private static String tagCondition(TagQuery tags) {
+        var condition = "id in (select pt.post_id from post_tag pt join tag t on t.id = pt.tag_id where t.name in ("
+                + placeholders(tags.getTags().size()) + ")";
+        return tags.isMatchAll() ? condition + " group by pt.post_id having count(*) = ?)" : condition + ")";
+    }
+
+    private static List<Object> tagArgs(TagQuery tags) {
+        List<Object> args = new ArrayList<>(tags.getTags());
+        if (tags.isMatchAll()) {
+            args.add(tags.getTags().size());
+        }
+        return args;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
     }
 }
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.repository;
+
+import ru.yandex.practicum.model.SearchHit;
+
+import java.util.List;
+
+/**
+ * Full-text search over post titles and texts. All words of the query have to match; hits come best ranked
+ * first, each with a snippet of the text where matched words are wrapped in
+ * {@link ru.yandex.practicum.util.Snippets#START} and {@link ru.yandex.practicum.util.Snippets#STOP}.
+ */
+public interface PostSearch {
+
+    List<SearchHit> search(String query, int limit, long offset);
+
+    int count(String query);
+
+    /**
+     * Called after a post was inserted or its title or text changed, in the same transaction.
+     */
+    default void postChanged(Long postId) {
+    }
+
+    default void postDeleted(Long postId) {
+    }
+
+    /**
+     * Called after posts were written around the repository (bulk loads, tests).
+     */
+    default void rebuild() {
+    }
+
+}
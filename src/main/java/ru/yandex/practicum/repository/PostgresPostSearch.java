@@ -0,0 +1,44 @@
+package ru.yandex.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.model.SearchHit;
+import ru.yandex.practicum.util.Snippets;
+
+import java.util.List;
+
+/**
+ * Uses the generated {@code post.search_vector} column and its GIN index (V7__post_search.sql). Only the rows of
+ * the requested page are ranked again for the snippet, ts_headline re-parses the whole text.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "blog.search.type", havingValue = "postgres", matchIfMissing = true)
+public class PostgresPostSearch implements PostSearch {
+
+    private static final String HEADLINE_OPTIONS = "StartSel=" + Snippets.START + ", StopSel=" + Snippets.STOP
+            + ", MinWords=15, MaxWords=35, MaxFragments=2, FragmentDelimiter=\" ... \"";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<SearchHit> search(String query, int limit, long offset) {
+        return jdbcTemplate.query(
+                "select p.id, ts_headline('russian', p.text, p.query, ?) as snippet from ("
+                        + "select id, text, query, ts_rank_cd(search_vector, query) as rank "
+                        + "from post, websearch_to_tsquery('russian', ?) query "
+                        + "where search_vector @@ query order by rank desc, id limit ? offset ?"
+                        + ") p order by p.rank desc, p.id",
+                (rs, rowNum) -> new SearchHit(rs.getLong("id"), rs.getString("snippet")),
+                HEADLINE_OPTIONS, query, limit, offset);
+    }
+
+    @Override
+    public int count(String query) {
+        return jdbcTemplate.queryForObject(
+                "select count(*) from post where search_vector @@ websearch_to_tsquery('russian', ?)", Integer.class, query);
+    }
+
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Statements PostgreSQL and H2 spell differently. Inserts that may race with an insert of the same key use
+ * {@code insert ... on conflict} on PostgreSQL and {@code merge ... key} on H2, so neither fails on the unique key.
+ */
+@Component
+public class SqlDialect {
+
+    private final boolean h2;
+
+    public SqlDialect(JdbcTemplate jdbcTemplate) {
+        this.h2 = "H2".equals(jdbcTemplate.execute(
+                (ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName()));
+    }
+
+    // inserts the rows of source, a values list or a select, skipping those whose key exists already
+    public String insertIfAbsent(String table, String columns, String key, String source) {
+        return h2
+                ? "merge into " + table + " (" + columns + ") key (" + key + ") " + source
+                : "insert into " + table + " (" + columns + ") " + source + " on conflict (" + key + ") do nothing";
+    }
+
+    // inserts a row into a single column table unless it exists, and locks it until the transaction ends either way
+    public String insertAndLock(String table, String column) {
+        return h2
+                ? "merge into " + table + " (" + column + ") key (" + column + ") values (?)"
+                : "insert into " + table + " (" + column + ") values (?) on conflict (" + column + ") do update set "
+                        + column + " = excluded." + column;
+    }
+
+}
@@ -1,13 +1,17 @@
 package ru.yandex.practicum.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.model.Comment;
 import ru.yandex.practicum.repository.CommentRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Service
+@Timed("blog.service")
 @RequiredArgsConstructor
 public class CommentService {
 
@@ -17,18 +21,26 @@ public class CommentService {
         commentRepository.addComment(postId, text);
     }
 
-    public void deleteCommentFromPost(Long commentId) {
-        commentRepository.deleteCommentById(commentId);
+    public void deleteCommentFromPost(Long postId, Long commentId) {
+        commentRepository.deleteCommentById(postId, commentId);
     }
 
-    public void updateComment(Long commentId, String text) {
-        commentRepository.updateComment(commentId, text);
+    public void updateComment(Long postId, Long commentId, String text) {
+        commentRepository.updateComment(postId, commentId, text);
     }
 
     public List<Comment> findAllCommentsByPostId(Long postId) {
         return commentRepository.findAllCommentsByPostId(postId);
     }
 
+    public Map<Long, List<Comment>> findAllCommentsByPostIds(Collection<Long> postIds) {
+        return commentRepository.findAllCommentsByPostIds(postIds);
+    }
+
+    public Map<Long, Integer> countCommentsByPostIds(Collection<Long> postIds) {
+        return commentRepository.countCommentsByPostIds(postIds);
+    }
+
     public void deleteCommentsByPostId(Long postId) {
         commentRepository.deleteCommentsByPostId(postId);
     }
@@ -0,0 +1,179 @@
+package ru.yandex.practicum.service;
+
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.config.ExecutorConfig;
+import ru.yandex.practicum.model.Paging;
+import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.model.PostPage;
+import ru.yandex.practicum.model.PostVersion;
+import ru.yandex.practicum.util.ETags;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Assembles a feed page. The post count and the page are loaded concurrently, comment counts start as soon as
+ * the page is there; if a query fails or the timeout expires the failure is thrown without waiting for the rest.
+ * Cancelling a future does not stop its query, so each task runs in a read-only transaction with the feed timeout,
+ * which JdbcTemplate applies as the query timeout of every statement, and a query left behind ends by itself.
+ */
+@Service
+@Timed("blog.service")
+public class FeedService {
+
+    private final PostService postService;
+
+    private final CommentService commentService;
+
+    private final Executor executor;
+
+    private final Duration timeout;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public FeedService(PostService postService,
+                       CommentService commentService,
+                       @Qualifier(ExecutorConfig.FEED_EXECUTOR) Executor executor,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${blog.feed.timeout:5s}") Duration timeout) {
+        this.postService = postService;
+        this.commentService = commentService;
+        this.executor = executor;
+        this.timeout = timeout;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // transaction timeouts are whole seconds
+        this.transactionTemplate.setTimeout((int) Math.max(1, (timeout.toMillis() + 999) / 1000));
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public PostPage findFeed(String search, int pageNumber, int pageSize) {
+        return load(() -> postService.getPostCount(search),
+                () -> postService.findAllPosts(search, pageNumber, pageSize), pageNumber, pageSize);
+    }
+
+    public PostPage findTextFeed(String query, int pageNumber, int pageSize) {
+        return load(() -> postService.getPostCountByText(query),
+                () -> postService.findAllPostsByText(query, pageNumber, pageSize), pageNumber, pageSize);
+    }
+
+    public PostPage findFeed(String search, Long after, Long before, int pageSize) {
+        var page = postService.findPostPage(search, after, before, pageSize);
+        return new PostPage(withCommentCounts(page.getPosts()), page.getPaging());
+    }
+
+    // a weak ETag of the tag feed page built from the post versions and the page count, without loading the posts
+    public String findFeedTag(String search, int pageNumber, Long after, Long before, int pageSize) {
+        if (after != null || before != null) {
+            // one row more than the page, as findPostPage reads it; the before query returns the rows newest first
+            List<PostVersion> versions = new ArrayList<>(postService.findPageVersions(search, after, before, pageSize));
+            if (before != null) {
+                Collections.reverse(versions);
+            }
+            var hasMore = versions.size() > pageSize;
+            if (hasMore) {
+                versions = before == null ? versions.subList(0, pageSize) : versions.subList(1, versions.size());
+            }
+            return cursorTag(search, after, before, pageSize, versions, hasMore);
+        }
+        var pageCount = new Paging(postService.getPostCount(search), pageNumber, pageSize).getPageCount();
+        return pageTag(search, pageNumber, pageSize, pageCount, postService.findPageVersions(search, pageNumber, pageSize));
+    }
+
+    // the same ETag built from a loaded page: its posts may come from a cache entry older than the current versions,
+    // so it is tagged as what it shows and a stale page is never confirmed by a 304 later
+    public String feedTag(PostPage page, String search, int pageNumber, Long after, Long before, int pageSize) {
+        var versions = page.getPosts().stream()
+                .map(post -> new PostVersion(post.getId(), post.getVersion(), null, post.getPendingLikes()))
+                .toList();
+        if (after != null || before != null) {
+            var paging = page.getPaging();
+            return cursorTag(search, after, before, pageSize, versions,
+                    (before == null ? paging.getNextCursor() : paging.getPreviousCursor()) != null);
+        }
+        return pageTag(search, pageNumber, pageSize, page.getPaging().getPageCount(), versions);
+    }
+
+    private static String pageTag(String search, int pageNumber, int pageSize, long pageCount, List<PostVersion> versions) {
+        return ETags.weak("page", search, pageNumber, pageSize, pageCount, versions(versions));
+    }
+
+    private static String cursorTag(String search, Long after, Long before, int pageSize, List<PostVersion> versions,
+                                    boolean hasMore) {
+        return ETags.weak("cursor", search, after, before, pageSize, hasMore, versions(versions));
+    }
+
+    private static String versions(List<PostVersion> versions) {
+        var result = new StringBuilder();
+        for (var version : versions) {
+            result.append(version.getId()).append('.').append(version.getVersion()).append('.')
+                    .append(version.getPendingLikes()).append(',');
+        }
+        return result.toString();
+    }
+
+    private PostPage load(Supplier<Integer> postCount, Supplier<List<Post>> page, int pageNumber, int pageSize) {
+        var count = CompletableFuture.supplyAsync(withTimeout(postCount), executor);
+        // not thenApplyAsync: a task waiting for a free executor slot while holding one could starve the executor
+        var posts = CompletableFuture.supplyAsync(withTimeout(page), executor)
+                .thenApply(result -> withTimeout(() -> withCommentCounts(result)).get());
+        var all = CompletableFuture.allOf(count, posts);
+        // allOf waits for every future, the first failure should not
+        count.exceptionally(e -> failFast(all, e));
+        posts.exceptionally(e -> failFast(all, e));
+        try {
+            await(all);
+        } finally {
+            count.cancel(true);
+            posts.cancel(true);
+        }
+        return new PostPage(posts.join(), new Paging(count.join(), pageNumber, pageSize));
+    }
+
+    private <T> Supplier<T> withTimeout(Supplier<T> query) {
+        return () -> transactionTemplate.execute(status -> query.get());
+    }
+
+    private List<Post> withCommentCounts(List<Post> posts) {
+        Map<Long, Integer> commentCounts = commentService.countCommentsByPostIds(posts.stream().map(Post::getId).toList());
+        posts.forEach(post -> post.setCommentCount(commentCounts.getOrDefault(post.getId(), 0)));
+        return posts;
+    }
+
+    private void await(CompletableFuture<Void> all) {
+        try {
+            all.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Feed queries did not finish in " + timeout, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("Interrupted while loading the feed", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    private static <T> T failFast(CompletableFuture<Void> all, Throwable e) {
+        all.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        return null;
+    }
+
+}
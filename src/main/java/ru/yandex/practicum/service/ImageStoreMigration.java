@@ -0,0 +1,52 @@
+package ru.yandex.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.repository.PostRepository;
+
+/**
+ * Moves images still kept in post.image to the configured image store. Runs on startup with
+ * {@code --blog.images.store.migrate=true} and can be interrupted and restarted at any point.
+ */
+@Slf4j
+@Component
+public class ImageStoreMigration implements ApplicationRunner {
+
+    private final PostRepository postRepository;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    public ImageStoreMigration(PostRepository postRepository,
+                               @Value("${blog.images.store.migrate:false}") boolean enabled,
+                               @Value("${blog.images.store.migrate-batch-size:50}") int batchSize) {
+        this.postRepository = postRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            migrate();
+        }
+    }
+
+    public int migrate() {
+        var total = 0;
+        int moved;
+        do {
+            moved = postRepository.moveImagesToStore(batchSize);
+            total += moved;
+            if (moved > 0) {
+                log.info("Moved {} images to the image store", total);
+            }
+        } while (moved > 0);
+        return total;
+    }
+
+}
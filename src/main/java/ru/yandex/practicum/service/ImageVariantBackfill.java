@@ -0,0 +1,86 @@
+package ru.yandex.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.repository.ImageVariantRepository;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Generates image variants for posts saved before variants existed, a batch per run in id order.
+ * New and updated posts get their variants on save, so the job stops once it reaches the last post. When saving
+ * the variants of a post fails, the post may lie behind the job's position, so the job starts a new pass from
+ * the first post.
+ */
+@Slf4j
+@Component
+public class ImageVariantBackfill {
+
+    private final ImageVariantRepository imageVariantRepository;
+
+    private final ImageVariantService imageVariantService;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private volatile long lastPostId;
+
+    private volatile boolean done;
+
+    // not synchronized: a virtual thread blocked on JDBC inside a monitor would pin its carrier thread
+    private final Lock lock = new ReentrantLock();
+
+    public ImageVariantBackfill(ImageVariantRepository imageVariantRepository,
+                                ImageVariantService imageVariantService,
+                                @Value("${blog.images.variants.backfill.enabled:true}") boolean enabled,
+                                @Value("${blog.images.variants.backfill.batch-size:20}") int batchSize) {
+        this.imageVariantRepository = imageVariantRepository;
+        this.imageVariantService = imageVariantService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    // picks up posts added around PostService, e.g. by an archive import
+    public void restart() {
+        done = false;
+    }
+
+    @Scheduled(initialDelayString = "${blog.images.variants.backfill.initial-delay-ms:10000}",
+            fixedDelayString = "${blog.images.variants.backfill.interval-ms:5000}")
+    public void backfill() {
+        lock.lock();
+        try {
+            if (!enabled) {
+                return;
+            }
+            if (imageVariantService.takeFailedSaves()) {
+                lastPostId = 0;
+                done = false;
+            }
+            if (done) {
+                return;
+            }
+            var postIds = imageVariantRepository.findPostIdsWithoutVariants(lastPostId, batchSize);
+            if (postIds.isEmpty()) {
+                done = true;
+                log.info("Image variants backfill finished");
+                return;
+            }
+            for (var postId : postIds) {
+                imageVariantService.generateVariants(postId);
+                lastPostId = postId;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.service;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.model.ImageMetadata;
+import ru.yandex.practicum.model.ImageVariant;
+import ru.yandex.practicum.repository.ImageVariantRepository;
+import ru.yandex.practicum.repository.PostRepository;
+import ru.yandex.practicum.util.Thumbnails;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+@Service
+@Timed("blog.service")
+@RequiredArgsConstructor
+public class ImageVariantService {
+
+    private final PostRepository postRepository;
+
+    private final ImageVariantRepository imageVariantRepository;
+
+    private final AtomicBoolean failedSaves = new AtomicBoolean();
+
+    // reads the current image of the post back from storage, so the upload itself never has to be held in memory
+    public void generateVariants(Long postId) {
+        String hash;
+        try {
+            hash = postRepository.findImageMetadata(postId).getHash();
+        } catch (Exception e) {
+            log.warn("Failed to find image of post {}", postId, e);
+            return;
+        }
+        if (hash == null) {
+            return;
+        }
+        var variants = ImageVariant.values();
+        Map<ImageVariant, byte[]> images = new EnumMap<>(ImageVariant.class);
+        try (var image = postRepository.openImage(postId, hash)) {
+            if (image == null) {
+                // the image has been replaced in the meantime, the newer save generates its own variants
+                return;
+            }
+            var resized = Thumbnails.resize(image, Arrays.stream(variants).mapToInt(ImageVariant::getHeight).toArray());
+            for (int i = 0; i < variants.length; i++) {
+                images.put(variants[i], resized.get(i));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to resize image of post {}", postId, e);
+            Arrays.stream(variants).forEach(variant -> images.put(variant, null));
+        }
+        try {
+            imageVariantRepository.saveVariants(postId, hash, images);
+        } catch (DataAccessException e) {
+            // the original is served until the backfill job, told by takeFailedSaves, regenerates the variants
+            failedSaves.set(true);
+            log.warn("Failed to save image variants of post {}", postId, e);
+        }
+    }
+
+    // whether saving variants failed since the last call, the posts affected are left without variants
+    public boolean takeFailedSaves() {
+        return failedSaves.getAndSet(false);
+    }
+
+    public ImageMetadata findVariantMetadata(Long postId, ImageVariant variant) {
+        return imageVariantRepository.findVariantMetadata(postId, variant);
+    }
+
+    public void writeVariant(Long postId, ImageVariant variant, long offset, long length, OutputStream out) {
+        imageVariantRepository.writeVariant(postId, variant, offset, length, out);
+    }
+
+}
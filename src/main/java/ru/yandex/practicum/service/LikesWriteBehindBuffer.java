@@ -0,0 +1,118 @@
+package ru.yandex.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.config.CacheConfig;
+import ru.yandex.practicum.repository.PostRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces like/unlike clicks per post in memory and writes the accumulated deltas in one batch per flush.
+ * Deltas are changed with merge and taken with remove, both atomic per post, so a flush empties the map and a
+ * click arriving meanwhile starts a new entry for the next flush.
+ */
+@Slf4j
+@Component
+public class LikesWriteBehindBuffer {
+
+    private final PostRepository postRepository;
+
+    private final CacheManager cacheManager;
+
+    private final boolean enabled;
+
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+
+    private final Counter flushedDeltas;
+
+    private final Counter flushedPosts;
+
+    private final Counter failedFlushes;
+
+    public LikesWriteBehindBuffer(PostRepository postRepository,
+                                  CacheManager cacheManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${blog.likes.write-behind.enabled:false}") boolean enabled) {
+        this.postRepository = postRepository;
+        this.cacheManager = cacheManager;
+        this.enabled = enabled;
+        this.flushedDeltas = Counter.builder("blog.likes.flushed.delta")
+                .description("Sum of absolute like deltas written to the database")
+                .register(meterRegistry);
+        this.flushedPosts = Counter.builder("blog.likes.flushed.posts")
+                .description("Post rows updated by like flushes")
+                .register(meterRegistry);
+        this.failedFlushes = Counter.builder("blog.likes.flush.failures")
+                .register(meterRegistry);
+        Gauge.builder("blog.likes.pending.delta", this, LikesWriteBehindBuffer::getPendingDelta)
+                .description("Sum of absolute like deltas not yet written to the database")
+                .register(meterRegistry);
+        Gauge.builder("blog.likes.pending.posts", this, LikesWriteBehindBuffer::getPendingPosts)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void add(Long postId, int delta) {
+        merge(postId, delta);
+    }
+
+    public long getPending(Long postId) {
+        return pending.getOrDefault(postId, 0L);
+    }
+
+    public long getPendingDelta() {
+        return pending.values().stream().mapToLong(Math::abs).sum();
+    }
+
+    public long getPendingPosts() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${blog.likes.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        Map<Long, Long> deltas = new HashMap<>();
+        for (var postId : pending.keySet()) {
+            var delta = pending.remove(postId);
+            if (delta != null) {
+                deltas.put(postId, delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            postRepository.addLikesCounts(deltas);
+            var posts = cacheManager.getCache(CacheConfig.POSTS);
+            if (posts != null) {
+                deltas.keySet().forEach(posts::evict);
+            }
+            flushedPosts.increment(deltas.size());
+            flushedDeltas.increment(deltas.values().stream().mapToLong(Math::abs).sum());
+        } catch (DataAccessException e) {
+            failedFlushes.increment();
+            log.warn("Failed to flush likes of {} posts, will retry", deltas.size(), e);
+            deltas.forEach(this::merge);
+        }
+    }
+
+    // an entry whose likes and unlikes cancel out is removed
+    private void merge(Long postId, long delta) {
+        pending.merge(postId, delta, (current, added) -> current + added == 0 ? null : current + added);
+    }
+
+}
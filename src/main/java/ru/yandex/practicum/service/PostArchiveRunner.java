@@ -0,0 +1,59 @@
+package ru.yandex.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Imports or exports a post archive file on startup: {@code --blog.archive.import-file=posts.ndjson} or
+ * {@code --blog.archive.export-file=posts.ndjson.gz}. Files ending with {@code .gz} are gzipped.
+ */
+@Slf4j
+@Component
+public class PostArchiveRunner implements ApplicationRunner {
+
+    private final PostArchiveService postArchiveService;
+
+    private final String importFile;
+
+    private final String exportFile;
+
+    public PostArchiveRunner(PostArchiveService postArchiveService,
+                             @Value("${blog.archive.import-file:}") String importFile,
+                             @Value("${blog.archive.export-file:}") String exportFile) {
+        this.postArchiveService = postArchiveService;
+        this.importFile = importFile;
+        this.exportFile = exportFile;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!importFile.isBlank()) {
+            var file = Path.of(importFile);
+            log.info("Importing posts from {}", file);
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                postArchiveService.importPosts(file.toString().endsWith(".gz") ? new GZIPInputStream(in) : in);
+            }
+        }
+        if (!exportFile.isBlank()) {
+            var file = Path.of(exportFile);
+            log.info("Exporting posts to {}", file);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                postArchiveService.exportPosts(file.toString().endsWith(".gz") ? new GZIPOutputStream(out) : out);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package ru.yandex.practicum.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.config.CacheConfig;
+import ru.yandex.practicum.model.ArchivedPost;
+import ru.yandex.practicum.model.Comment;
+import ru.yandex.practicum.model.ImageMetadata;
+import ru.yandex.practicum.repository.CommentRepository;
+import ru.yandex.practicum.repository.PostArchiveRepository;
+import ru.yandex.practicum.repository.PostRepository;
+import ru.yandex.practicum.repository.PostSearch;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Imports and exports posts with their comments and images as NDJSON, one {@link ArchivedPost} per line.
+ * Both directions work a batch at a time, so only one batch of posts and a single image are held in memory.
+ */
+@Slf4j
+@Service
+public class PostArchiveService {
+
+    private final PostArchiveRepository postArchiveRepository;
+
+    private final PostRepository postRepository;
+
+    private final CommentRepository commentRepository;
+
+    private final PostSearch postSearch;
+
+    private final PostCountCache postCountCache;
+
+    private final ImageVariantBackfill imageVariantBackfill;
+
+    private final CacheManager cacheManager;
+
+    private final ObjectMapper objectMapper;
+
+    private final int batchSize;
+
+    public PostArchiveService(PostArchiveRepository postArchiveRepository,
+                              PostRepository postRepository,
+                              CommentRepository commentRepository,
+                              PostSearch postSearch,
+                              PostCountCache postCountCache,
+                              ImageVariantBackfill imageVariantBackfill,
+                              CacheManager cacheManager,
+                              ObjectMapper objectMapper,
+                              @Value("${blog.archive.batch-size:500}") int batchSize) {
+        this.postArchiveRepository = postArchiveRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.postSearch = postSearch;
+        this.postCountCache = postCountCache;
+        this.imageVariantBackfill = imageVariantBackfill;
+        this.cacheManager = cacheManager;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    // every batch is committed on its own, a failed import leaves the batches before the failing line in place
+    public int importPosts(InputStream in) throws IOException {
+        var total = 0;
+        try (var lines = objectMapper.readerFor(ArchivedPost.class).<ArchivedPost>readValues(in)) {
+            List<ArchivedPost> batch = new ArrayList<>(batchSize);
+            List<ImageMetadata> images = new ArrayList<>(batchSize);
+            try {
+                while (lines.hasNextValue()) {
+                    var post = lines.nextValue();
+                    // the image goes to the store as its line is read, the batch keeps only its metadata
+                    images.add(saveImage(post.getImage()));
+                    post.setImage(null);
+                    batch.add(post);
+                    if (batch.size() == batchSize) {
+                        total += insert(batch, images);
+                    }
+                }
+                total += insert(batch, images);
+            } catch (IOException | RuntimeException e) {
+                deleteUnusedImages(images, e);
+                throw e;
+            }
+        } finally {
+            if (total > 0) {
+                postsImported();
+            }
+        }
+        log.info("Imported {} posts", total);
+        return total;
+    }
+
+    public int exportPosts(OutputStream out) throws IOException {
+        var total = 0;
+        try (var lines = objectMapper.writerFor(ArchivedPost.class).withRootValueSeparator("\n").writeValues(out)) {
+            long lastId = 0;
+            List<ArchivedPost> batch;
+            do {
+                batch = postArchiveRepository.findPostsAfter(lastId, batchSize);
+                var comments = commentRepository.findAllCommentsByPostIds(batch.stream().map(ArchivedPost::getId).toList());
+                for (var post : batch) {
+                    post.setComments(comments.getOrDefault(post.getId(), List.of()).stream().map(Comment::getText).toList());
+                    post.setImage(readImage(post));
+                    lines.write(post);
+                    // only the current post's image is kept
+                    post.setImage(null);
+                    lastId = post.getId();
+                }
+                total += batch.size();
+            } while (batch.size() == batchSize);
+            if (total > 0) {
+                out.write('\n');
+            }
+        }
+        log.info("Exported {} posts", total);
+        return total;
+    }
+
+    private ImageMetadata saveImage(byte[] image) {
+        return image == null || image.length == 0 ? null : postRepository.saveImage(new ByteArrayInputStream(image), image.length);
+    }
+
+    // clears the batch once it is inserted, so its images are no longer removed on a failure
+    private int insert(List<ArchivedPost> batch, List<ImageMetadata> images) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        var inserted = postArchiveRepository.insertPosts(batch, images).size();
+        batch.clear();
+        images.clear();
+        batchInserted();
+        return inserted;
+    }
+
+    // the images stored for a batch that was not inserted, unless other posts use them
+    private void deleteUnusedImages(List<ImageMetadata> images, Exception failure) {
+        try {
+            postRepository.deleteUnusedImages(images.stream().filter(Objects::nonNull).map(ImageMetadata::getHash).toList());
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private byte[] readImage(ArchivedPost post) throws IOException {
+        if (post.getImageHash() == null) {
+            return null;
+        }
+        try (var image = postRepository.openImage(post.getId(), post.getImageHash())) {
+            return image == null ? null : image.readAllBytes();
+        }
+    }
+
+    // a committed batch is visible at once, the cached pages and counts of a long import must not lag behind it
+    private void batchInserted() {
+        Stream.of(CacheConfig.POSTS, CacheConfig.FEEDS, CacheConfig.COMMENTS)
+                .map(cacheManager::getCache)
+                .filter(Objects::nonNull)
+                .forEach(Cache::invalidate);
+        postCountCache.invalidateAll();
+    }
+
+    // the search index and the variant backfill go through all posts, so they are brought up to date once
+    private void postsImported() {
+        postSearch.rebuild();
+        imageVariantBackfill.restart();
+    }
+
+}
@@ -0,0 +1,105 @@
+package ru.yandex.practicum.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.model.TagQuery;
+import ru.yandex.practicum.repository.PostRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Post counts for the paging bar, keyed by tag query and adjusted in place on every post write.
+ * Writers wrap the (committed) database write in {@link #beginWrite()} / {@link #endWrite()} and report the
+ * tags the post had before and after it; a count loaded while a write was in flight is returned but not cached.
+ */
+@Component
+public class PostCountCache {
+
+    private final PostRepository postRepository;
+
+    private final boolean enabled;
+
+    private final int maxEntries;
+
+    private final long estimateThreshold;
+
+    private final Map<TagQuery, Long> counts = new ConcurrentHashMap<>();
+
+    private final AtomicInteger writesInFlight = new AtomicInteger();
+
+    private final AtomicLong writes = new AtomicLong();
+
+    public PostCountCache(PostRepository postRepository,
+                          @Value("${blog.post-count.cache.enabled:true}") boolean enabled,
+                          @Value("${blog.post-count.cache.max-entries:10000}") int maxEntries,
+                          @Value("${blog.post-count.estimate-threshold:0}") long estimateThreshold) {
+        this.postRepository = postRepository;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.estimateThreshold = estimateThreshold;
+    }
+
+    public int getPostCount(String search) {
+        if (!enabled) {
+            return postRepository.getPostCount(search);
+        }
+        var query = TagQuery.parse(search);
+        var cached = counts.get(query);
+        if (cached != null) {
+            return (int) (long) cached;
+        }
+        var writesBefore = writes.get();
+        var count = load(query, search);
+        if (!writtenSince(writesBefore) && counts.size() < maxEntries) {
+            counts.putIfAbsent(query, count);
+            // a write may have committed after the query but passed endWrite() before the value was put
+            if (writtenSince(writesBefore)) {
+                counts.remove(query, count);
+            }
+        }
+        return (int) count;
+    }
+
+    public void beginWrite() {
+        writesInFlight.incrementAndGet();
+    }
+
+    public void applyWrite(List<String> oldTags, List<String> newTags) {
+        counts.replaceAll((query, count) -> count + delta(query, oldTags, newTags));
+    }
+
+    public void endWrite() {
+        writes.incrementAndGet();
+        writesInFlight.decrementAndGet();
+    }
+
+    public void invalidateAll() {
+        writes.incrementAndGet();
+        counts.clear();
+    }
+
+    private boolean writtenSince(long writesBefore) {
+        return writesInFlight.get() > 0 || writes.get() != writesBefore;
+    }
+
+    private long load(TagQuery query, String search) {
+        if (query.isEmpty() && estimateThreshold > 0) {
+            var estimate = postRepository.estimatePostCount();
+            if (estimate >= estimateThreshold) {
+                return estimate;
+            }
+        }
+        return postRepository.getPostCount(search);
+    }
+
+    private static int delta(TagQuery query, List<String> oldTags, List<String> newTags) {
+        var before = oldTags != null && query.matches(oldTags) ? 1 : 0;
+        var after = newTags != null && query.matches(newTags) ? 1 : 0;
+        return after - before;
+    }
+
+}
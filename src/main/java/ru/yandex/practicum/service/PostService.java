@@ -1,53 +1,293 @@
 package ru.yandex.practicum.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import ru.yandex.practicum.model.DeletedPost;
+import ru.yandex.practicum.model.ImageMetadata;
+import ru.yandex.practicum.model.ImageVariant;
+import ru.yandex.practicum.model.Paging;
 import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.model.PostPage;
+import ru.yandex.practicum.model.PostUpdate;
+import ru.yandex.practicum.model.PostVersion;
+import ru.yandex.practicum.model.TagQuery;
+import ru.yandex.practicum.model.UpdatedPost;
 import ru.yandex.practicum.repository.PostRepository;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.function.Function;
 
 @Service
+@Timed("blog.service")
 @RequiredArgsConstructor
 public class PostService {
 
     private final PostRepository postRepository;
 
+    private final LikesWriteBehindBuffer likesBuffer;
+
+    private final PostCountCache postCountCache;
+
+    private final ImageVariantService imageVariantService;
+
+    @Value("${blog.posts.delete-batch-size:500}")
+    private int deleteBatchSize = 500;
+
     public List<Post> findAllPosts(String search, int pageNumber, int pageSize) {
-        return postRepository.findAll(search, pageNumber, pageSize);
+        var posts = postRepository.findAll(search, pageNumber, pageSize).stream().map(Post::copy).toList();
+        posts.forEach(this::addPendingLikes);
+        return posts;
+    }
+
+    public List<Post> findAllPostsByText(String query, int pageNumber, int pageSize) {
+        var posts = postRepository.findAllByText(query, pageNumber, pageSize).stream().map(Post::copy).toList();
+        posts.forEach(this::addPendingLikes);
+        return posts;
+    }
+
+    public int getPostCountByText(String query) {
+        return postRepository.getPostCountByText(query);
+    }
+
+    public PostPage findPostPage(String search, Long after, Long before, int pageSize) {
+        List<Post> posts;
+        Long previousCursor;
+        Long nextCursor;
+        if (before == null) {
+            posts = postRepository.findAllAfter(search, after == null ? 0L : after, pageSize + 1);
+            var hasMore = posts.size() > pageSize;
+            posts = hasMore ? posts.subList(0, pageSize) : posts;
+            // ids start at 1, so after=0 is the first page as well and has nothing before it
+            previousCursor = after == null || after <= 0 || posts.isEmpty() ? null : posts.get(0).getId();
+            nextCursor = hasMore ? posts.get(posts.size() - 1).getId() : null;
+        } else {
+            posts = postRepository.findAllBefore(search, before, pageSize + 1);
+            var hasMore = posts.size() > pageSize;
+            posts = hasMore ? posts.subList(1, posts.size()) : posts;
+            previousCursor = hasMore ? posts.get(0).getId() : null;
+            nextCursor = posts.isEmpty() ? null : posts.get(posts.size() - 1).getId();
+        }
+        posts = posts.stream().map(Post::copy).toList();
+        posts.forEach(this::addPendingLikes);
+        return new PostPage(posts, Paging.ofCursors(pageSize, previousCursor, nextCursor));
+    }
+
+    // the versions of the posts findAllPosts or findPostPage would show
+    public List<PostVersion> findPageVersions(String search, int pageNumber, int pageSize) {
+        return withPendingLikes(postRepository.findVersions(search, pageNumber, pageSize));
+    }
+
+    public List<PostVersion> findPageVersions(String search, Long after, Long before, int pageSize) {
+        return withPendingLikes(before == null
+                ? postRepository.findVersionsAfter(search, after == null ? 0L : after, pageSize + 1)
+                : postRepository.findVersionsBefore(search, before, pageSize + 1));
+    }
+
+    // null when there is no such post
+    public PostVersion findVersion(Long postId) {
+        var version = postRepository.findVersion(postId);
+        return version == null ? null : withPendingLikes(List.of(version)).get(0);
     }
 
     public void savePost(String title, MultipartFile image, String tags, String text) throws IOException {
-        postRepository.savePost(title, image.getBytes(), tags, text);
+        writeWithImage(image, storedImage -> savePost(title, storedImage, tags, text));
+    }
+
+    private long savePost(String title, ImageMetadata image, String tags, String text) {
+        long postId;
+        postCountCache.beginWrite();
+        try {
+            postId = postRepository.savePost(title, image, tags, text);
+            postCountCache.applyWrite(null, TagQuery.splitTags(tags));
+        } finally {
+            postCountCache.endWrite();
+        }
+        if (image != null) {
+            imageVariantService.generateVariants(postId);
+        }
+        return postId;
     }
 
     public Post findById(Long postId) throws Exception {
-        return postRepository.findById(postId);
+        var post = postRepository.findById(postId).copy();
+        addPendingLikes(post);
+        return post;
+    }
+
+    public byte[] findImageById(Long postId) throws Exception {
+        return postRepository.findImageById(postId);
+    }
+
+    public ImageMetadata findImageMetadata(Long postId) throws Exception {
+        return postRepository.findImageMetadata(postId);
+    }
+
+    public void writeImage(Long postId, long offset, long length, OutputStream out) {
+        postRepository.writeImage(postId, offset, length, out);
+    }
+
+    public Path findImageFile(String hash) {
+        return postRepository.findImageFile(hash);
+    }
+
+    public ImageMetadata findImageVariantMetadata(Long postId, ImageVariant variant) {
+        return imageVariantService.findVariantMetadata(postId, variant);
+    }
+
+    public void writeImageVariant(Long postId, ImageVariant variant, long offset, long length, OutputStream out) {
+        imageVariantService.writeVariant(postId, variant, offset, length, out);
     }
 
     public int getPostCount(String search) {
-        return postRepository.getPostCount(search);
+        return postCountCache.getPostCount(search);
     }
 
     public void changePostLikesCount(Long postId, boolean like) throws Exception {
-        var post = postRepository.findById(postId);
-        post.setLikesCount(like ? post.getLikesCount() + 1 : post.getLikesCount() - 1);
-        postRepository.updatePost(post);
+        var delta = like ? 1 : -1;
+        if (likesBuffer.isEnabled()) {
+            likesBuffer.add(postId, delta);
+        } else {
+            postRepository.addLikesCount(postId, delta);
+        }
     }
 
     public void deletePost(Long postId) {
-        postRepository.delete(postId);
+        DeletedPost deleted;
+        postCountCache.beginWrite();
+        try {
+            deleted = postRepository.delete(postId);
+            // null when a concurrent delete removed the post first, it has adjusted the counts then
+            if (deleted != null) {
+                postCountCache.applyWrite(deleted.getTags(), null);
+            }
+        } finally {
+            postCountCache.endWrite();
+        }
+        if (deleted != null && deleted.getImageHash() != null) {
+            postRepository.deleteUnusedImages(List.of(deleted.getImageHash()));
+        }
+    }
+
+    // every batch is its own transaction, so a large cleanup never holds its locks for long
+    public int deletePosts(Collection<Long> postIds) {
+        var ids = List.copyOf(new LinkedHashSet<>(postIds));
+        var deleted = 0;
+        for (int from = 0; from < ids.size(); from += deleteBatchSize) {
+            deleted += deleteBatch(ids.subList(from, Math.min(ids.size(), from + deleteBatchSize)));
+        }
+        return deleted;
     }
 
+    public int deletePostsByTag(String tag) {
+        var deleted = 0;
+        List<Long> ids;
+        while (!(ids = postRepository.findPostIdsByTag(tag, deleteBatchSize)).isEmpty()) {
+            deleted += deleteBatch(ids);
+        }
+        return deleted;
+    }
+
+    private int deleteBatch(List<Long> postIds) {
+        List<DeletedPost> deleted;
+        postCountCache.beginWrite();
+        try {
+            deleted = postRepository.deletePosts(postIds);
+            deleted.forEach(post -> postCountCache.applyWrite(post.getTags(), null));
+        } finally {
+            postCountCache.endWrite();
+        }
+        postRepository.deleteUnusedImages(deleted.stream().map(DeletedPost::getImageHash).toList());
+        return deleted.size();
+    }
+
+    // the repository writes only the fields that differ from the stored post
     public void updatePost(Long postId, String title, MultipartFile image, String tags, String text) throws Exception {
-        var post = postRepository.findById(postId);
-        post.setTitle(title);
-        post.setImage(image.getBytes());
-        post.setTagsAsText(tags);
-        post.setText(text);
-        postRepository.updatePost(post);
+        // an empty file input means the image was not changed
+        var updated = writeWithImage(image, storedImage -> {
+            var update = new PostUpdate();
+            update.setTitle(title);
+            update.setText(text);
+            update.setTags(tags);
+            update.setImage(storedImage);
+            return updatePost(postId, update);
+        });
+        if (updated.getChanges().getImage() != null && updated.getOldImageHash() != null) {
+            postRepository.deleteUnusedImages(List.of(updated.getOldImageHash()));
+        }
+    }
+
+    private UpdatedPost updatePost(Long postId, PostUpdate update) {
+        UpdatedPost updated;
+        postCountCache.beginWrite();
+        try {
+            updated = postRepository.updatePost(postId, update);
+            if (updated.getChanges().getTags() != null) {
+                postCountCache.applyWrite(updated.getOldTags(), TagQuery.splitTags(updated.getChanges().getTags()));
+            }
+        } finally {
+            postCountCache.endWrite();
+        }
+        if (updated.getChanges().getImage() != null) {
+            imageVariantService.generateVariants(postId);
+        }
+        return updated;
+    }
+
+    // stores the upload and runs the write that makes a post use it. When the write fails the upload is removed
+    // again unless another post uses it. A delete of the last post with the same image can remove it after it was
+    // stored (see ImageLockRepository), the write is retried once with the upload stored again then.
+    private <T> T writeWithImage(MultipartFile image, Function<ImageMetadata, T> write) throws IOException {
+        for (var attempt = 1; ; attempt++) {
+            var storedImage = storeImage(image);
+            try {
+                return write.apply(storedImage);
+            } catch (RuntimeException e) {
+                if (storedImage == null) {
+                    throw e;
+                }
+                try {
+                    postRepository.deleteUnusedImages(List.of(storedImage.getHash()));
+                } catch (RuntimeException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+                if (attempt > 1 || !(e instanceof ConcurrencyFailureException)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // streams the upload into the image store, the multipart limits keep it bounded
+    private ImageMetadata storeImage(MultipartFile image) throws IOException {
+        if (image == null || image.isEmpty()) {
+            return null;
+        }
+        try (var in = image.getInputStream()) {
+            return postRepository.saveImage(in, image.getSize());
+        }
+    }
+
+    private List<PostVersion> withPendingLikes(List<PostVersion> versions) {
+        if (likesBuffer.isEnabled()) {
+            versions.forEach(version -> version.setPendingLikes(likesBuffer.getPending(version.getId())));
+        }
+        return versions;
+    }
+
+    private void addPendingLikes(Post post) {
+        if (likesBuffer.isEnabled()) {
+            post.setPendingLikes(likesBuffer.getPending(post.getId()));
+            post.setLikesCount(post.getLikesCount() + (int) post.getPendingLikes());
+        }
     }
 
 }
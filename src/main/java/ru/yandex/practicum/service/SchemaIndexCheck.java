@@ -0,0 +1,104 @@
+package ru.yandex.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks on startup that the indexes the queries rely on exist. An index counts when its leading columns are
+ * the required ones, whatever it is called, so primary keys and unique constraints qualify.
+ */
+@Slf4j
+@Component
+public class SchemaIndexCheck implements ApplicationRunner {
+
+    private static final Map<String, List<List<String>>> REQUIRED_INDEXES = Map.of(
+            // the feed and its cursors are ordered by post id
+            "post", List.of(List.of("id"), List.of("image_hash")),
+            "comment", List.of(List.of("post_id", "id")),
+            "tag", List.of(List.of("name")),
+            "post_tag", List.of(List.of("tag_id", "post_id"), List.of("post_id")),
+            "post_image_variant", List.of(List.of("post_id", "variant")),
+            "image_blob", List.of(List.of("hash"))
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean postgresSearch;
+
+    private final boolean failOnMissing;
+
+    public SchemaIndexCheck(JdbcTemplate jdbcTemplate,
+                            @Value("${blog.search.type:postgres}") String searchType,
+                            @Value("${blog.schema.check.fail-on-missing-index:false}") boolean failOnMissing) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.postgresSearch = searchType.equals("postgres");
+        this.failOnMissing = failOnMissing;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        var missing = findMissingIndexes();
+        if (missing.isEmpty()) {
+            return;
+        }
+        var message = "Missing indexes, queries on these columns will scan whole tables: " + String.join(", ", missing);
+        if (failOnMissing) {
+            throw new IllegalStateException(message);
+        }
+        log.error(message);
+    }
+
+    // missing indexes as table(column, ...)
+    public List<String> findMissingIndexes() {
+        Map<String, List<List<String>>> required = new TreeMap<>(REQUIRED_INDEXES);
+        if (postgresSearch) {
+            var post = new ArrayList<>(required.get("post"));
+            post.add(List.of("search_vector"));
+            required.put("post", post);
+        }
+        return jdbcTemplate.execute((ConnectionCallback<List<String>>) con -> {
+            var metaData = con.getMetaData();
+            List<String> missing = new ArrayList<>();
+            for (var table : required.entrySet()) {
+                var indexes = findIndexes(metaData, table.getKey());
+                for (var columns : table.getValue()) {
+                    if (indexes.stream().noneMatch(index -> index.size() >= columns.size()
+                            && index.subList(0, columns.size()).equals(columns))) {
+                        missing.add(table.getKey() + "(" + String.join(", ", columns) + ")");
+                    }
+                }
+            }
+            return missing;
+        });
+    }
+
+    private static List<List<String>> findIndexes(DatabaseMetaData metaData, String table) throws SQLException {
+        var name = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+        Map<String, Map<Short, String>> indexes = new LinkedHashMap<>();
+        try (var rs = metaData.getIndexInfo(null, null, name, false, true)) {
+            while (rs.next()) {
+                var column = rs.getString("COLUMN_NAME");
+                if (rs.getString("INDEX_NAME") != null && column != null) {
+                    indexes.computeIfAbsent(rs.getString("INDEX_NAME"), index -> new TreeMap<>())
+                            .put(rs.getShort("ORDINAL_POSITION"), column.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return indexes.values().stream().map(columns -> List.copyOf(columns.values())).toList();
+    }
+
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.util;
+
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.StringJoiner;
+
+public final class ETags {
+
+    // a restart may bring changed templates, so pages validated by an earlier run are rendered again
+    private static final String EPOCH = Long.toHexString(System.currentTimeMillis());
+
+    private ETags() {
+    }
+
+    /**
+     * A weak ETag of everything a page is rendered from; weak because the same page is sent gzipped or not.
+     */
+    public static String weak(Object... parts) {
+        var state = new StringJoiner("|", EPOCH + "|", "");
+        for (var part : parts) {
+            var value = String.valueOf(part);
+            // length-prefixed, so a separator inside a search string can't make two states look alike
+            state.add(value.length() + ":" + value);
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(state.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.util;
+
+import ru.yandex.practicum.model.ImageMetadata;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Passes an image through while computing its SHA-256 hash, size and content type, so an upload can go
+ * straight to storage. Fails as soon as more than {@code maxSize} bytes have been read.
+ */
+public class ImageInput extends FilterInputStream {
+
+    private static final int HEAD_SIZE = 16;
+
+    private final MessageDigest digest = Images.sha256();
+
+    private final byte[] head = new byte[HEAD_SIZE];
+
+    private final long maxSize;
+
+    private long size;
+
+    public ImageInput(InputStream in, long maxSize) {
+        super(in);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        var b = in.read();
+        if (b >= 0) {
+            update(new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        var n = in.read(b, off, len);
+        if (n > 0) {
+            update(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // skipped bytes have to be hashed too
+        return Math.max(read(new byte[(int) Math.min(n, 8192)]), 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    public ImageMetadata toMetadata() {
+        var contentType = Images.detectContentType(Arrays.copyOf(head, (int) Math.min(size, HEAD_SIZE)));
+        return new ImageMetadata(contentType, HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    private void update(byte[] b, int off, int n) throws IOException {
+        if (size < HEAD_SIZE) {
+            System.arraycopy(b, off, head, (int) size, (int) Math.min(n, HEAD_SIZE - size));
+        }
+        size += n;
+        if (size > maxSize) {
+            throw new IOException("Image is larger than " + maxSize + " bytes");
+        }
+        digest.update(b, off, n);
+    }
+
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+public final class Images {
+
+    public static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] GIF = "GIF8".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RIFF = "RIFF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WEBP = "WEBP".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BMP = "BM".getBytes(StandardCharsets.US_ASCII);
+
+    private Images() {
+    }
+
+    public static String detectContentType(byte[] head) {
+        if (head == null) {
+            return null;
+        }
+        if (startsWith(head, 0, PNG)) {
+            return "image/png";
+        }
+        if (startsWith(head, 0, JPEG)) {
+            return "image/jpeg";
+        }
+        if (startsWith(head, 0, GIF)) {
+            return "image/gif";
+        }
+        if (startsWith(head, 0, RIFF) && startsWith(head, 8, WEBP)) {
+            return "image/webp";
+        }
+        if (startsWith(head, 0, BMP)) {
+            return "image/bmp";
+        }
+        return DEFAULT_CONTENT_TYPE;
+    }
+
+    public static String sha256Hex(byte[] content) {
+        if (content == null) {
+            return null;
+        }
+        return HexFormat.of().formatHex(sha256().digest(content));
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private static boolean startsWith(byte[] content, int offset, byte[] prefix) {
+        return content.length >= offset + prefix.length
+                && Arrays.equals(content, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+
+}
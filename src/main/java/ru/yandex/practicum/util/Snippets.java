@@ -0,0 +1,27 @@
+package ru.yandex.practicum.util;
+
+import org.springframework.web.util.HtmlUtils;
+
+public final class Snippets {
+
+    // control characters don't occur in post texts, a forged one can't produce more than a stray <mark>
+    public static final char START = '\u0002';
+
+    public static final char STOP = '\u0003';
+
+    private Snippets() {
+    }
+
+    /**
+     * Escapes the snippet and turns the markers around matched words into {@code <mark>} tags.
+     */
+    public static String toHtml(String snippet) {
+        if (snippet == null) {
+            return null;
+        }
+        return HtmlUtils.htmlEscape(snippet)
+                .replace(String.valueOf(START), "<mark>")
+                .replace(String.valueOf(STOP), "</mark>");
+    }
+
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.util;
+
+import javax.imageio.ImageIO;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class Thumbnails {
+
+    private Thumbnails() {
+    }
+
+    /**
+     * Scales the image down to each of the given heights keeping its aspect ratio; JPEG for opaque images, PNG
+     * otherwise. The image is decoded once. An element is null when the image is not higher than that height,
+     * all of them are null when the image can't be decoded.
+     */
+    public static List<byte[]> resize(InputStream image, int... heights) throws IOException {
+        List<byte[]> result = new ArrayList<>(Arrays.asList(new byte[heights.length][]));
+        try (var input = ImageIO.createImageInputStream(image)) {
+            var readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return result;
+            }
+            var reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                var sourceHeight = reader.getHeight(0);
+                var maxHeight = Arrays.stream(heights).filter(height -> height < sourceHeight).max();
+                if (maxHeight.isEmpty()) {
+                    return result;
+                }
+                // decoding every pixel of a large photo is the expensive part, two source rows per target row is enough
+                var step = Math.max(1, sourceHeight / (maxHeight.getAsInt() * 2));
+                var param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                var source = reader.read(0, param);
+                for (int i = 0; i < heights.length; i++) {
+                    if (heights[i] < sourceHeight) {
+                        result.set(i, scale(source, heights[i]));
+                    }
+                }
+                return result;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static byte[] scale(BufferedImage source, int height) throws IOException {
+        var width = Math.max(1, (int) Math.round((double) source.getWidth() * height / source.getHeight()));
+        var alpha = source.getColorModel().hasAlpha();
+        var target = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        var graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        var out = new ByteArrayOutputStream();
+        ImageIO.write(target, alpha ? "png" : "jpeg", out);
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,3 @@
+-- bumped on every change shown on the post and feed pages, their ETag and Last-Modified are built from it
+alter table post add column if not exists version bigint default 0 not null;
+alter table post add column if not exists modified_at timestamp with time zone default current_timestamp not null;
@@ -0,0 +1,4 @@
+-- a row per image posts start or stop using, locked by that transaction; see ImageLockRepository
+create table if not exists image_lock (
+  hash varchar(64) primary key
+);
@@ -0,0 +1,17 @@
+-- the schema before versioned migrations; existing databases are baselined at version 0 and
+-- every migration is written to be a no-op where it has been applied by hand already
+create table if not exists post (
+  id bigserial primary key,
+  title varchar(500),
+  image bytea,
+  text text,
+  tags text,
+  likes_count integer default 0
+);
+
+create table if not exists comment (
+  id bigserial primary key,
+  post_id bigint,
+  text text,
+  constraint comment_post_id_fkey foreign key (post_id) references post(id)
+);
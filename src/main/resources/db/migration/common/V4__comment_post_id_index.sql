@@ -0,0 +1 @@
+create index if not exists comment_post_id_idx on comment (post_id);
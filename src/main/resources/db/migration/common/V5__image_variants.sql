@@ -0,0 +1,10 @@
+create table if not exists post_image_variant (
+  post_id bigint not null references post(id) on delete cascade,
+  variant varchar(20) not null,
+  source_hash varchar(64),
+  image bytea,
+  image_content_type varchar(100),
+  image_hash varchar(64),
+  image_size bigint,
+  primary key (post_id, variant)
+);
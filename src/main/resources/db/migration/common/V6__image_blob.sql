@@ -0,0 +1,4 @@
+create table if not exists image_blob (
+  hash varchar(64) primary key,
+  content bytea not null
+);
@@ -0,0 +1,6 @@
+-- comments go with their post in the same statement
+alter table comment drop constraint if exists comment_post_id_fkey;
+alter table comment add constraint comment_post_id_fkey foreign key (post_id) references post(id) on delete cascade;
+
+-- finds images no post refers to any more after a delete
+create index if not exists post_image_hash_idx on post (image_hash);
@@ -0,0 +1,2 @@
+-- comments of a post in id order straight from the index
+create index if not exists comment_post_id_id_idx on comment (post_id, id);
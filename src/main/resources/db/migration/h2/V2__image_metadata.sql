@@ -0,0 +1,3 @@
+alter table post add column if not exists image_content_type varchar(100);
+alter table post add column if not exists image_hash varchar(64);
+alter table post add column if not exists image_size bigint;
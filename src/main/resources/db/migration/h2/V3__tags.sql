@@ -0,0 +1,12 @@
+create table if not exists tag (
+  id bigserial primary key,
+  name varchar(255) not null unique
+);
+
+create table if not exists post_tag (
+  post_id bigint not null references post(id) on delete cascade,
+  tag_id bigint not null references tag(id),
+  primary key (tag_id, post_id)
+);
+
+create index if not exists post_tag_post_id_idx on post_tag (post_id);
@@ -0,0 +1,2 @@
+-- covered by comment_post_id_id_idx; H2 keeps it, it may back the foreign key there
+drop index if exists comment_post_id_idx;
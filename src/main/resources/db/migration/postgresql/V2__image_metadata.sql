@@ -0,0 +1,8 @@
+alter table post add column if not exists image_content_type varchar(100);
+alter table post add column if not exists image_hash varchar(64);
+alter table post add column if not exists image_size bigint;
+
+update post
+set image_size = octet_length(image),
+    image_hash = encode(sha256(image), 'hex')
+where image is not null and image_hash is null;
@@ -0,0 +1,26 @@
+create table if not exists tag (
+  id bigserial primary key,
+  name varchar(255) not null unique
+);
+
+create table if not exists post_tag (
+  post_id bigint not null references post(id) on delete cascade,
+  tag_id bigint not null references tag(id),
+  primary key (tag_id, post_id)
+);
+
+create index if not exists post_tag_post_id_idx on post_tag (post_id);
+
+insert into tag (name)
+select distinct t.name
+from post p
+cross join regexp_split_to_table(trim(p.tags), '\s+') as t(name)
+where t.name <> ''
+on conflict (name) do nothing;
+
+insert into post_tag (post_id, tag_id)
+select distinct p.id, tag.id
+from post p
+cross join regexp_split_to_table(trim(p.tags), '\s+') as t(name)
+join tag on tag.name = t.name
+on conflict do nothing;
@@ -0,0 +1,6 @@
+-- adding a stored generated column rewrites the post table, run it in a maintenance window on large tables
+alter table post add column if not exists search_vector tsvector generated always as (
+  setweight(to_tsvector('russian', coalesce(title, '')), 'A') || setweight(to_tsvector('russian', coalesce(text, '')), 'B')
+) stored;
+
+create index if not exists post_search_vector_idx on post using gin (search_vector);
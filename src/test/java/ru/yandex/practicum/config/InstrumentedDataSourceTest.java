@@ -0,0 +1,104 @@
+package ru.yandex.practicum.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.repository.CommentRepository;
+
+import javax.sql.DataSource;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(DataSourceConfig.class)
+class InstrumentedDataSourceTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM comment");
+        jdbcTemplate.execute("DELETE FROM post");
+        jdbcTemplate.execute("ALTER TABLE post ALTER COLUMN id RESTART WITH 1");
+        jdbcTemplate.update("INSERT INTO post (title, image, text, tags) VALUES (?, ?, ?, ?)",
+                "Post 1", "Post Image Content One".getBytes(), "Post Text1", "Tag1");
+        jdbcTemplate.update("INSERT INTO post (title, image, text, tags) VALUES (?, ?, ?, ?)",
+                "Post 2", "Post Image Content Two".getBytes(), "Post Text2", "Tag2");
+        jdbcTemplate.execute("INSERT INTO comment (post_id, text) VALUES (1, 'Comment 1')");
+    }
+
+    @Test
+    void dataSource_shouldBeInstrumented() {
+        assertInstanceOf(InstrumentedDataSource.class, dataSource);
+    }
+
+    @Test
+    void query_shouldRecordTimeRowsAndBlobBytesPerStatement() {
+        var statement = "select image from post where id in (?, ...) order by id";
+        var queries = count("blog.jdbc.query", statement);
+        var rows = total("blog.jdbc.query.rows", statement);
+        var bytes = total("blog.jdbc.query.blob.bytes", statement);
+
+        jdbcTemplate.query("select image\n  from post where id in (?, ?) order by id",
+                (rs, rowNum) -> rs.getBytes("image"), 1L, 2L);
+        jdbcTemplate.query("select image from post where id in (?) order by id", (rs, rowNum) -> rs.getBytes("image"), 1L);
+
+        assertEquals(queries + 2, count("blog.jdbc.query", statement));
+        assertEquals(rows + 3, total("blog.jdbc.query.rows", statement));
+        assertEquals(bytes + 3 * "Post Image Content One".length(), total("blog.jdbc.query.blob.bytes", statement));
+    }
+
+    @Test
+    void statementName_shouldNotCountInListsOfDifferentLengthAsNewStatements() {
+        var placeholders = new StringBuilder("?");
+        for (int i = 0; i < 1100; i++) {
+            placeholders.append(", ?");
+            ReflectionTestUtils.invokeMethod(dataSource, "statementName",
+                    "select id from post where id in (" + placeholders + ")");
+        }
+
+        assertEquals("select title from post where id in (?, ...)", ReflectionTestUtils.invokeMethod(dataSource,
+                "statementName", "select title from post where id in (?, ?)"));
+    }
+
+    @Test
+    void repository_shouldBeTimedPerMethod() {
+        assertEquals(1, commentRepository.findAllCommentsByPostId(1L).size());
+
+        var timer = meterRegistry.find("blog.repository")
+                .tags("class", CommentRepository.class.getName(), "method", "findAllCommentsByPostId")
+                .timer();
+        assertNotNull(timer);
+        assertTrue(timer.count() >= 1);
+    }
+
+    private long count(String name, String statement) {
+        var timer = meterRegistry.find(name).tags("statement", statement, "outcome", "success").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private double total(String name, String statement) {
+        var summary = meterRegistry.find(name).tag("statement", statement).summary();
+        return summary == null ? 0 : summary.totalAmount();
+    }
+
+}
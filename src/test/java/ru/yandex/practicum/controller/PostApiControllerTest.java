@@ -0,0 +1,140 @@
+package ru.yandex.practicum.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import ru.yandex.practicum.config.DataSourceConfig;
+import ru.yandex.practicum.repository.PostSearch;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@Import(DataSourceConfig.class)
+class PostApiControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PostSearch postSearch;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM comment");
+        jdbcTemplate.execute("ALTER TABLE comment ALTER COLUMN id RESTART WITH 1");
+        jdbcTemplate.execute("DELETE FROM post");
+        jdbcTemplate.execute("ALTER TABLE post ALTER COLUMN id RESTART WITH 1");
+        jdbcTemplate.update("INSERT INTO post (title, image, text, tags, likes_count) VALUES (?, ?, ?, ?, ?)",
+                "Post 1", "Post Image Content One".getBytes(), "Post Text1", "Tag1 Tag2", 10);
+        jdbcTemplate.update("INSERT INTO post (title, image, text, tags, likes_count) VALUES (?, ?, ?, ?, ?)",
+                "Post 2", "Post Image Content Two".getBytes(), "Post Text2", "Tag2 Tag3", 5);
+        jdbcTemplate.update("INSERT INTO post (title, text, tags, likes_count) VALUES (?, ?, ?, ?)",
+                "Post 3", "Post Text3", "Tag3", 0);
+        jdbcTemplate.execute("DELETE FROM tag");
+        jdbcTemplate.execute("ALTER TABLE tag ALTER COLUMN id RESTART WITH 1");
+        jdbcTemplate.execute("INSERT INTO tag (name) VALUES ('Tag1'), ('Tag2'), ('Tag3')");
+        jdbcTemplate.execute("INSERT INTO post_tag (post_id, tag_id) VALUES (1, 1), (1, 2), (2, 2), (2, 3), (3, 3)");
+        jdbcTemplate.execute("INSERT INTO comment (post_id, text) VALUES (1, 'Comment 1')");
+        jdbcTemplate.execute("INSERT INTO comment (post_id, text) VALUES (1, 'Comment 2')");
+        postSearch.rebuild();
+    }
+
+    @Test
+    void findPosts_shouldReturnCursorPage() throws Exception {
+        perform(get("/api/posts").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(jsonPath("$.posts[*].id", contains(1, 2)))
+                .andExpect(jsonPath("$.posts[0].title").value("Post 1"))
+                .andExpect(jsonPath("$.posts[0].textPreview").value("Post Text1"))
+                .andExpect(jsonPath("$.posts[0].tags", contains("Tag1", "Tag2")))
+                .andExpect(jsonPath("$.posts[0].commentCount").value(2))
+                .andExpect(jsonPath("$.posts[0].text").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor").value(2));
+
+        perform(get("/api/posts").param("limit", "2").param("after", "2"))
+                .andExpect(jsonPath("$.posts[*].id", contains(3)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void findPosts_shouldFilterByTagAndSelectFields() throws Exception {
+        perform(get("/api/posts").param("tag", "Tag3").param("fields", "id,likesCount"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(2)))
+                .andExpect(jsonPath("$.posts[0].id").value(2))
+                .andExpect(jsonPath("$.posts[0].likesCount").value(5))
+                .andExpect(jsonPath("$.posts[0].title").doesNotExist())
+                .andExpect(jsonPath("$.posts[0].commentCount").doesNotExist());
+    }
+
+    @Test
+    void findPosts_shouldRejectUnknownFieldsAndLimits() throws Exception {
+        mockMvc.perform(get("/api/posts").param("fields", "id,image"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/posts").param("limit", "1000"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void findPost_shouldReturnPostWithoutImage() throws Exception {
+        perform(get("/api/posts/{postId}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.text").value("Post Text1"))
+                .andExpect(jsonPath("$.commentCount").value(2))
+                .andExpect(jsonPath("$.image").doesNotExist());
+
+        mockMvc.perform(get("/api/posts/{postId}", 42L))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void findComments_shouldReturnCommentsOfPost() throws Exception {
+        perform(get("/api/posts/{postId}/comments", 1L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].text", contains("Comment 1", "Comment 2")));
+    }
+
+    @Test
+    void like_shouldReturnNewLikesCount() throws Exception {
+        mockMvc.perform(post("/api/posts/{postId}/like", 2L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likesCount").value(6));
+        mockMvc.perform(post("/api/posts/{postId}/like", 2L).param("like", "false"))
+                .andExpect(jsonPath("$.likesCount").value(5));
+        mockMvc.perform(post("/api/posts/{postId}/like", 42L))
+                .andExpect(status().isNotFound());
+    }
+
+    // the streamed body is written asynchronously
+    private ResultActions perform(RequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
+}
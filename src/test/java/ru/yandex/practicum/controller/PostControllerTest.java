@@ -13,7 +13,16 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 import ru.yandex.practicum.config.DataSourceConfig;
+import ru.yandex.practicum.repository.PostSearch;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -40,6 +49,9 @@ class PostControllerTest {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private PostSearch postSearch;
+
     @BeforeEach
     void setUp() {
         mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
@@ -51,10 +63,15 @@ class PostControllerTest {
                 "Post 1", "Post Image Content One".getBytes(), "Post Text1", "Tag1 Tag2", 10);
         jdbcTemplate.update("INSERT INTO post (title, image, text, tags, likes_count) VALUES (?, ?, ?, ?, ?)",
                 "Post 2", "Post Image Content Two".getBytes(), "Post Text2", "Tag2 Tag3", 5);
+        jdbcTemplate.execute("DELETE FROM tag");
+        jdbcTemplate.execute("ALTER TABLE tag ALTER COLUMN id RESTART WITH 1");
+        jdbcTemplate.execute("INSERT INTO tag (name) VALUES ('Tag1'), ('Tag2'), ('Tag3')");
+        jdbcTemplate.execute("INSERT INTO post_tag (post_id, tag_id) VALUES (1, 1), (1, 2), (2, 2), (2, 3)");
         jdbcTemplate.execute("INSERT INTO comment (post_id, text) VALUES (1, 'Comment 1')");
         jdbcTemplate.execute("INSERT INTO comment (post_id, text) VALUES (1, 'Comment 2')");
         jdbcTemplate.execute("INSERT INTO comment (post_id, text) VALUES (2, 'Comment 3')");
         jdbcTemplate.execute("INSERT INTO comment (post_id, text) VALUES (2, 'Comment 4')");
+        postSearch.rebuild();
     }
 
     @Test
@@ -72,7 +89,24 @@ class PostControllerTest {
                 .andExpect(model().attributeExists("search"))
                 .andExpect(xpath("/html/body/div/table/tr").nodeCount(3))
                 .andExpect(xpath("/html/body/div/table/tr[2]/td/div[1]/a/h2").string("Post 1"))
-                .andExpect(xpath("/html/body/div/table/tr[3]/td/div[1]/a/h2").string("Post 2"));
+                .andExpect(xpath("/html/body/div/table/tr[3]/td/div[1]/a/h2").string("Post 2"))
+                .andExpect(xpath("/html/body/div/table/tr[2]/td/div[2]/span[2]").string("\u2709 2"));
+    }
+
+    @Test
+    void showPosts_shouldReturnPostsMatchingTextQuery() throws Exception {
+        jdbcTemplate.update("UPDATE post SET text = ? WHERE id = 2", "Text with <i>markup</i>");
+
+        mockMvc.perform(get("/")
+                        .param("pageSize", "5")
+                        .param("query", "markup")
+                )
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("query", "markup"))
+                .andExpect(xpath("/html/body/div/table/tr").nodeCount(2))
+                .andExpect(xpath("/html/body/div/table/tr[2]/td/div[1]/a/h2").string("Post 2"))
+                .andExpect(xpath("/html/body/div/table/tr[2]/td/p").string("Text with <i>markup</i>"))
+                .andExpect(xpath("/html/body/div/table/tr[2]/td/p/mark").string("markup"));
     }
 
     @Test
@@ -137,6 +171,22 @@ class PostControllerTest {
                 .andExpect(xpath("/html/body/div/table/tr[2]/td/div[1]/a/h2").string("Post 1"));
     }
 
+    @Test
+    void showPosts_shouldReturnPostsAfterCursor() throws Exception {
+        mockMvc.perform(get("/")
+                        .param("pageSize", "1")
+                        .param("after", "1")
+                        .param("search", "")
+                )
+                .andExpect(status().isOk())
+                .andExpect(view().name("posts"))
+                .andExpect(model().attributeExists("paging"))
+                .andExpect(xpath("/html/body/div/table/tr").nodeCount(2))
+                .andExpect(xpath("/html/body/div/table/tr[2]/td/div[1]/a/h2").string("Post 2"))
+                .andExpect(xpath("//button[@name='before']/@value").string("2"))
+                .andExpect(xpath("//button[@name='after']").doesNotExist());
+    }
+
     @Test
     void addPost_shouldReturnEmptyAddPostForm() throws Exception {
         mockMvc.perform(get("/add"))
@@ -188,6 +238,109 @@ class PostControllerTest {
                 .andExpect(content().bytes(imageBytes));
     }
 
+    @Test
+    void downloadImage_shouldReturnStoredContentTypeAndEtag() throws Exception {
+        var imageBytes = "Post Image Content One".getBytes();
+        jdbcTemplate.update("update post set image_content_type = 'image/png', image_hash = 'abc123' where id = 1");
+
+        mockMvc.perform(get("/images/{postId}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string("ETag", "\"abc123\""))
+                .andExpect(header().string("Cache-Control", "max-age=3600, public"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(content().bytes(imageBytes));
+
+        mockMvc.perform(get("/images/{postId}", 1L).header("If-None-Match", "\"abc123\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void downloadImage_shouldReturnRequestedRange() throws Exception {
+        mockMvc.perform(get("/images/{postId}", 1L).header("Range", "bytes=5-9"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 5-9/22"))
+                .andExpect(header().string("Content-Length", "5"))
+                .andExpect(content().bytes("Image".getBytes()));
+
+        mockMvc.perform(get("/images/{postId}", 1L).header("Range", "bytes=100-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */22"));
+    }
+
+    @Test
+    void downloadImage_shouldReturnThumbnailOfSavedImage() throws Exception {
+        var image = new BufferedImage(1200, 900, BufferedImage.TYPE_INT_RGB);
+        var png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        mockMvc.perform(multipart("/savePost")
+                        .file("image", png.toByteArray())
+                        .param("title", "Post 3")
+                        .param("tags", "Tag3")
+                        .param("text", "Post text3")
+                )
+                .andExpect(status().is3xxRedirection());
+
+        var thumb = mockMvc.perform(get("/images/{postId}", 3L).param("size", "thumb"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/jpeg"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        var thumbImage = ImageIO.read(new ByteArrayInputStream(thumb));
+        assertEquals(300, thumbImage.getHeight());
+        assertEquals(400, thumbImage.getWidth());
+    }
+
+    @Test
+    void downloadImage_shouldFallBackToOriginalWithoutVariant() throws Exception {
+        mockMvc.perform(get("/images/{postId}", 1L).param("size", "thumb"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes("Post Image Content One".getBytes()));
+
+        mockMvc.perform(get("/images/{postId}", 1L).param("size", "huge"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void showPosts_shouldAnswerNotModifiedUntilPostChanges() throws Exception {
+        var etag = mockMvc.perform(get("/").param("pageSize", "5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache, private"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertTrue(etag.startsWith("W/\""));
+
+        mockMvc.perform(get("/").param("pageSize", "5").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/").param("pageSize", "10").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/{postId}/like", 2L).param("like", "true"));
+
+        mockMvc.perform(get("/").param("pageSize", "5").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void showPost_shouldAnswerNotModifiedUntilCommentsChange() throws Exception {
+        var response = mockMvc.perform(get("/{postId}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn().getResponse();
+        var etag = response.getHeader("ETag");
+
+        mockMvc.perform(get("/{postId}", 1L).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/{postId}", 2L).header("If-None-Match", etag))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/{postId}/comments", 1L).param("text", "Comment 5"));
+
+        mockMvc.perform(get("/{postId}", 1L).header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void showPost_shouldReturnHtmlWithPost() throws Exception {
         mockMvc.perform(get("/{postId}", 1L))
@@ -216,6 +369,27 @@ class PostControllerTest {
                 .andExpect(redirectedUrl("/"));
     }
 
+    @Test
+    void deletePost_shouldDeleteCommentsWithPost() throws Exception {
+        mockMvc.perform(post("/{postId}/delete", 1L))
+                .andExpect(status().is3xxRedirection());
+
+        assertEquals(List.of(2L), jdbcTemplate.queryForList("SELECT DISTINCT post_id FROM comment", Long.class));
+    }
+
+    @Test
+    void deletePosts_shouldDeletePostsByIdsAndTag() throws Exception {
+        mockMvc.perform(post("/delete").param("ids", "1"))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/"));
+        assertEquals(List.of(2L), jdbcTemplate.queryForList("SELECT id FROM post", Long.class));
+
+        mockMvc.perform(post("/delete").param("tag", "Tag3"))
+                .andExpect(status().is3xxRedirection());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM post", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM comment", Integer.class));
+    }
+
     @Test
     void editPost_shouldReturnHtmlAddPostForm() throws Exception {
         mockMvc.perform(get("/{postId}/edit", 1L))
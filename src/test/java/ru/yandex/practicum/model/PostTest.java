@@ -0,0 +1,66 @@
+package ru.yandex.practicum.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PostTest {
+
+    @Test
+    void getTextParts_shouldSplitLikeRegexSplit() {
+        for (var text : List.of("", "one", "one\ntwo", "\none\n\ntwo\n\n", "\n", "\n\n")) {
+            var post = new Post(1L, "Post 1", null, text, null, 0);
+
+            assertEquals(Arrays.asList(text.split("\\n")), post.getTextParts(), text);
+        }
+    }
+
+    @Test
+    void getTextPreview_shouldNotCutSurrogatePair() {
+        var text = "a".repeat(299) + "😀" + "tail";
+
+        var post = new Post(1L, "Post 1", null, text, null, 0);
+
+        assertEquals("a".repeat(299) + "...", post.getTextPreview());
+    }
+
+    @Test
+    void getTextPreview_shouldReturnShortTextAsIs() {
+        var post = new Post(1L, "Post 1", null, "short", null, 0);
+
+        assertSame(post.getText(), post.getTextPreview());
+        assertNull(new Post(1L, "Post 1", null, null, null, 0).getTextPreview());
+    }
+
+    @Test
+    void setters_shouldResetDerivedValues() {
+        var post = new Post(1L, "Post 1", null, "one\ntwo", "Tag1 Tag2", 0);
+        assertEquals(List.of("one", "two"), post.getTextParts());
+        assertEquals(List.of("Tag1", "Tag2"), post.getTags());
+
+        post.setText("three");
+        post.setTagsAsText("Tag3");
+
+        assertEquals(List.of("three"), post.getTextParts());
+        assertEquals("three", post.getTextPreview());
+        assertEquals(List.of("Tag3"), post.getTags());
+    }
+
+    @Test
+    void equals_shouldNotDependOnDerivedValues() {
+        var post = new Post(1L, "Post 1", null, "one\ntwo", "Tag1 Tag2", 0);
+        var other = new Post(1L, "Post 1", null, "one\ntwo", "Tag1 Tag2", 0);
+
+        post.getTags();
+        post.getTextParts();
+
+        assertEquals(other, post);
+        assertEquals(other.hashCode(), post.hashCode());
+    }
+
+}
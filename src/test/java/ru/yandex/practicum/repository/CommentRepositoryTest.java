@@ -11,6 +11,7 @@ import ru.yandex.practicum.config.DataSourceConfig;
 import ru.yandex.practicum.model.Comment;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -55,6 +56,28 @@ class CommentRepositoryTest {
         assertArrayEquals(expected.toArray(), founded.toArray());
     }
 
+    @Test
+    void findAllCommentsByPostIds_shouldReturnCommentsGroupedByPostId() throws Exception {
+        var expected = Map.of(
+                1L, List.of(new Comment(1L, 1L, "Comment 1"), new Comment(2L, 1L, "Comment 2")),
+                2L, List.of(new Comment(3L, 2L, "Comment 3"))
+        );
+
+        var founded = commentRepository.findAllCommentsByPostIds(List.of(1L, 2L, 3L));
+
+        assertNotNull(founded);
+        assertEquals(expected, founded);
+        assertTrue(commentRepository.findAllCommentsByPostIds(List.of()).isEmpty());
+    }
+
+    @Test
+    void countCommentsByPostIds_shouldReturnCountsOfPostsHavingComments() throws Exception {
+        var founded = commentRepository.countCommentsByPostIds(List.of(1L, 2L, 3L));
+
+        assertEquals(Map.of(1L, 2, 2L, 1), founded);
+        assertTrue(commentRepository.countCommentsByPostIds(List.of()).isEmpty());
+    }
+
     @Test
     void deleteCommentsByPostId_shouldRemoveAllCommentsByPostId() throws Exception {
         var postId = 2L;
@@ -86,19 +109,30 @@ class CommentRepositoryTest {
     void deleteCommentById_shouldDeleteComment() throws Exception {
         var commentId = 3L;
 
-        commentRepository.deleteCommentById(commentId);
+        commentRepository.deleteCommentById(2L, commentId);
 
         var count = jdbcTemplate.queryForObject("select count(1) from comment where id=" + commentId, Integer.class);
 
         assertEquals(0, count);
     }
 
+    @Test
+    void deleteCommentById_shouldNotDeleteCommentOfAnotherPost() throws Exception {
+        var commentId = 3L;
+
+        commentRepository.deleteCommentById(1L, commentId);
+
+        var count = jdbcTemplate.queryForObject("select count(1) from comment where id=" + commentId, Integer.class);
+
+        assertEquals(1, count);
+    }
+
     @Test
     void updateComment_shouldUpdateComment() throws Exception {
         var commentId = 2L;
         var expected = "Updated comment";
 
-        commentRepository.updateComment(commentId, expected);
+        commentRepository.updateComment(1L, commentId, expected);
 
         var founded = jdbcTemplate.query("select id, post_id, text from comment where id=?",
                 (rs, rowNum) -> new Comment(
@@ -112,4 +146,15 @@ class CommentRepositoryTest {
         assertEquals(expected, founded.getText());
     }
 
-}
\ No newline at end of file
+    @Test
+    void commentChanges_shouldBumpPostVersion() {
+        commentRepository.addComment(1L, "Comment 4");
+        commentRepository.updateComment(1L, 1L, "Comment 1 edited");
+        commentRepository.deleteCommentById(1L, 2L);
+        commentRepository.deleteCommentById(1L, 3L);
+
+        assertEquals(3, jdbcTemplate.queryForObject("select version from post where id = 1", Long.class));
+        assertEquals(0, jdbcTemplate.queryForObject("select version from post where id = 2", Long.class));
+    }
+
+}
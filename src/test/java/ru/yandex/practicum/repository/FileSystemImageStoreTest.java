@@ -0,0 +1,95 @@
+package ru.yandex.practicum.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.model.ImageMetadata;
+import ru.yandex.practicum.util.Images;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileSystemImageStoreTest {
+
+    @TempDir
+    private Path root;
+
+    private FileSystemImageStore imageStore;
+
+    @BeforeEach
+    void setUp() {
+        imageStore = new FileSystemImageStore(root);
+    }
+
+    @Test
+    void save_shouldStoreImageUnderItsHash() throws Exception {
+        var image = "Post Image Content One".getBytes();
+        var hash = Images.sha256Hex(image);
+
+        save(image);
+        var metadata = save(image);
+
+        assertEquals(hash, metadata.getHash());
+        assertEquals(image.length, metadata.getSize());
+        var file = root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+        assertEquals(file.toAbsolutePath(), imageStore.findFile(hash));
+        assertArrayEquals(image, Files.readAllBytes(file));
+        try (var files = Files.list(file.getParent())) {
+            assertEquals(1, files.count());
+        }
+        try (var stored = imageStore.open(hash)) {
+            assertArrayEquals(image, stored.readAllBytes());
+        }
+    }
+
+    @Test
+    void save_shouldRejectImageLargerThanDeclared() throws Exception {
+        var image = "Post Image Content One".getBytes();
+
+        assertThrows(UncheckedIOException.class, () -> imageStore.save(new ByteArrayInputStream(image), image.length - 1));
+
+        assertNull(imageStore.findFile(Images.sha256Hex(image)));
+        try (var files = Files.list(root)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void write_shouldStreamRequestedBytes() {
+        var hash = save("Post Image Content One".getBytes()).getHash();
+        var out = new ByteArrayOutputStream();
+
+        imageStore.write(hash, 5, 5, out);
+
+        assertArrayEquals("Image".getBytes(), out.toByteArray());
+    }
+
+    @Test
+    void delete_shouldRemoveImage() {
+        var hash = save("Post Image Content One".getBytes()).getHash();
+
+        imageStore.delete(hash);
+
+        assertNull(imageStore.open(hash));
+        assertNull(imageStore.findFile(hash));
+    }
+
+    @Test
+    void open_shouldRejectHashOutsideOfStore() {
+        assertThrows(IllegalArgumentException.class, () -> imageStore.open("../../etc/passwd"));
+        assertNull(imageStore.findFile("abc123"));
+    }
+
+    private ImageMetadata save(byte[] image) {
+        return imageStore.save(new ByteArrayInputStream(image), image.length);
+    }
+
+}
@@ -6,16 +6,32 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.config.DataSourceConfig;
+import ru.yandex.practicum.model.DeletedPost;
+import ru.yandex.practicum.model.ImageMetadata;
 import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.model.PostUpdate;
+import ru.yandex.practicum.util.Images;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @ActiveProfiles("test")
@@ -28,6 +44,12 @@ class PostRepositoryTest {
     @Autowired
     private PostRepository postRepository;
 
+    @Autowired
+    private PostSearch postSearch;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @BeforeEach
     void setUp() {
         jdbcTemplate.execute("DELETE FROM post");
@@ -36,13 +58,18 @@ class PostRepositoryTest {
                 "Post 1", "Post Image Content One".getBytes(), "Post Text1", "Tag1 Tag2", 10);
         jdbcTemplate.update("INSERT INTO post (title, image, text, tags, likes_count) VALUES (?, ?, ?, ?, ?)",
                 "Post 2", "Post Image Content Two".getBytes(), "Post Text2", "Tag2 Tag3", 5);
+        jdbcTemplate.execute("DELETE FROM tag");
+        jdbcTemplate.execute("ALTER TABLE tag ALTER COLUMN id RESTART WITH 1");
+        jdbcTemplate.execute("INSERT INTO tag (name) VALUES ('Tag1'), ('Tag2'), ('Tag3')");
+        jdbcTemplate.execute("INSERT INTO post_tag (post_id, tag_id) VALUES (1, 1), (1, 2), (2, 2), (2, 3)");
+        postSearch.rebuild();
     }
 
     @Test
     void findAll_shouldReturnAllPostsByPage() throws Exception {
         var expected = List.of(
-                new Post(1L, "Post 1", "Post Image Content One".getBytes(), "Post Text1", "Tag1 Tag2", 10),
-                new Post(2L, "Post 2", "Post Image Content Two".getBytes(), "Post Text2", "Tag2 Tag3", 5)
+                new Post(1L, "Post 1", null, "Post Text1", "Tag1 Tag2", 10),
+                new Post(2L, "Post 2", null, "Post Text2", "Tag2 Tag3", 5)
         );
 
         var founded = postRepository.findAll("", 1, 5);
@@ -55,8 +82,8 @@ class PostRepositoryTest {
     @Test
     void findAll_shouldReturnAllPostsByTag() throws Exception {
         var expected = List.of(
-                new Post(1L, "Post 1", "Post Image Content One".getBytes(), "Post Text1", "Tag1 Tag2", 10),
-                new Post(2L, "Post 2", "Post Image Content Two".getBytes(), "Post Text2", "Tag2 Tag3", 5)
+                new Post(1L, "Post 1", null, "Post Text1", "Tag1 Tag2", 10),
+                new Post(2L, "Post 2", null, "Post Text2", "Tag2 Tag3", 5)
         );
 
         var founded = postRepository.findAll("Tag1", 1, 5);
@@ -66,6 +93,93 @@ class PostRepositoryTest {
         assertEquals(expected.get(0), founded.get(0));
     }
 
+    @Test
+    void findAll_shouldMatchWholeTagsOnly() throws Exception {
+        assertEquals(0, postRepository.findAll("Tag", 1, 5).size());
+        assertEquals(0, postRepository.findAll("ag1", 1, 5).size());
+    }
+
+    @Test
+    void findAll_shouldReturnPostsHavingAllOrAnyOfSearchedTags() throws Exception {
+        var all = postRepository.findAll("Tag1 Tag2", 1, 5);
+        var any = postRepository.findAll("Tag1 | Tag3", 1, 5);
+
+        assertEquals(List.of(1L), all.stream().map(Post::getId).toList());
+        assertEquals(List.of(1L, 2L), any.stream().map(Post::getId).toList());
+        assertEquals(0, postRepository.findAll("Tag1 Tag3", 1, 5).size());
+        assertEquals(2, postRepository.getPostCount("Tag1|Tag3"));
+        assertEquals(0, postRepository.getPostCount("Tag1 Tag3"));
+    }
+
+    @Test
+    void savePost_shouldIndexPostTags() throws Exception {
+        var postId = postRepository.savePost("Post 3", null, "Tag3  Tag4 Tag3", "Post Text3");
+
+        assertEquals(List.of(2L, postId), postRepository.findAll("Tag3", 1, 5).stream().map(Post::getId).toList());
+        assertEquals(List.of(postId), postRepository.findAll("Tag4", 1, 5).stream().map(Post::getId).toList());
+    }
+
+    @Test
+    void updatePost_shouldReplacePostTags() throws Exception {
+        var update = new PostUpdate();
+        update.setTags("Tag3");
+
+        postRepository.updatePost(1L, update);
+
+        assertEquals(0, postRepository.getPostCount("Tag1"));
+        assertEquals(2, postRepository.getPostCount("Tag3"));
+    }
+
+    @Test
+    void findAllAfter_shouldReturnPostsAfterCursorInIdOrder() throws Exception {
+        var founded = postRepository.findAllAfter("", 0L, 5);
+
+        assertEquals(List.of(1L, 2L), founded.stream().map(Post::getId).toList());
+        assertEquals(List.of(2L), postRepository.findAllAfter("", 1L, 5).stream().map(Post::getId).toList());
+        assertEquals(List.of(1L), postRepository.findAllAfter("", 0L, 1).stream().map(Post::getId).toList());
+        assertEquals(List.of(2L), postRepository.findAllAfter("Tag3", 0L, 5).stream().map(Post::getId).toList());
+    }
+
+    @Test
+    void findAllBefore_shouldReturnClosestPostsBeforeCursorInIdOrder() throws Exception {
+        postRepository.savePost("Post 3", null, "Tag3", "Post Text3");
+
+        var founded = postRepository.findAllBefore("", 3L, 5);
+
+        assertEquals(List.of(1L, 2L), founded.stream().map(Post::getId).toList());
+        assertEquals(List.of(2L), postRepository.findAllBefore("", 3L, 1).stream().map(Post::getId).toList());
+        assertEquals(List.of(2L), postRepository.findAllBefore("Tag3", 3L, 5).stream().map(Post::getId).toList());
+    }
+
+    @Test
+    void findAllByText_shouldReturnRankedPostsWithHighlightedSnippets() {
+        postRepository.savePost("Spring", null, "Tag3", "Nothing else");
+        postRepository.savePost("Other", null, "Tag3", "Spring and <b>spring</b> and spring boot");
+
+        var founded = postRepository.findAllByText("spring", 1, 5);
+
+        assertEquals(List.of(4L, 3L), founded.stream().map(Post::getId).toList());
+        assertEquals("<mark>Spring</mark> and &lt;b&gt;<mark>spring</mark>&lt;/b&gt; and <mark>spring</mark> boot",
+                founded.get(0).getSnippet());
+        assertEquals("Nothing else", founded.get(1).getSnippet());
+        assertEquals(List.of(3L), postRepository.findAllByText("SPRING", 2, 1).stream().map(Post::getId).toList());
+        assertEquals(List.of(4L), postRepository.findAllByText("boot spring", 1, 5).stream().map(Post::getId).toList());
+        assertEquals(2, postRepository.getPostCountByText("spring"));
+        assertEquals(0, postRepository.getPostCountByText("summer"));
+    }
+
+    @Test
+    void findAllByText_shouldFollowUpdatesAndDeletes() throws Exception {
+        assertEquals(0, postRepository.getPostCountByText("spring"));
+        var update = new PostUpdate();
+        update.setText("Now about spring");
+        postRepository.updatePost(1L, update);
+        postRepository.delete(2L);
+
+        assertEquals(List.of(1L), postRepository.findAllByText("spring", 1, 5).stream().map(Post::getId).toList());
+        assertEquals(0, postRepository.getPostCountByText("Text2"));
+    }
+
     @Test
     void savePost_shouldAddPostToDb() throws Exception {
         var title = "Added Post Title";
@@ -73,13 +187,14 @@ class PostRepositoryTest {
         var tags = "added post";
         var text = "Added Post Text";
 
-        var postId = postRepository.savePost(title, image, tags, text);
+        var postId = postRepository.savePost(title, saveImage(image), tags, text);
 
         var founded = postRepository.findById(postId);
 
         assertNotNull(founded);
         assertEquals(title, founded.getTitle());
-        assertArrayEquals(image, founded.getImage());
+        assertNull(founded.getImage());
+        assertArrayEquals(image, postRepository.findImageById(postId));
         assertEquals(tags, founded.getTagsAsText());
         assertEquals(text, founded.getText());
         assertEquals(0, founded.getLikesCount());
@@ -92,15 +207,149 @@ class PostRepositoryTest {
         var image = "Updated Post Image".getBytes();
         var tags = "updated post";
         var text = "updated Post Text";
-        var likesCount = 100;
-        var post = new Post(postId, title, image, text, tags, likesCount);
+        var update = new PostUpdate();
+        update.setTitle(title);
+        update.setImage(saveImage(image));
+        update.setTags(tags);
+        update.setText(text);
 
-        postRepository.updatePost(post);
+        postRepository.updatePost(postId, update);
 
         var founded = postRepository.findById(postId);
 
         assertNotNull(founded);
-        assertEquals(post, founded);
+        assertEquals(new Post(postId, title, null, text, tags, 10), founded);
+        assertArrayEquals(image, postRepository.findImageById(postId));
+    }
+
+    @Test
+    void updatePost_shouldWriteOnlyChangedColumns() throws Exception {
+        var postId = 1L;
+        var update = new PostUpdate();
+        update.setTitle("Updated Post Title");
+        jdbcTemplate.update("update post set likes_count = 42 where id = ?", postId);
+
+        postRepository.updatePost(postId, update);
+
+        assertEquals(new Post(postId, "Updated Post Title", null, "Post Text1", "Tag1 Tag2", 42), postRepository.findById(postId));
+        assertArrayEquals("Post Image Content One".getBytes(), postRepository.findImageById(postId));
+        assertEquals(1, postRepository.getPostCount("Tag1"));
+    }
+
+    @Test
+    void updatePost_shouldWriteOnlyFieldsThatDifferFromStoredPost() throws Exception {
+        var update = new PostUpdate();
+        update.setTitle("Post 1");
+        update.setText("New Text1");
+        update.setTags("Tag1 Tag2");
+
+        var updated = postRepository.updatePost(1L, update);
+
+        assertEquals("New Text1", updated.getChanges().getText());
+        assertNull(updated.getChanges().getTitle());
+        assertNull(updated.getChanges().getTags());
+        assertEquals(List.of("Tag1", "Tag2"), updated.getOldTags());
+        assertNull(updated.getOldImageHash());
+        var version = postRepository.findVersion(1L).getVersion();
+        assertTrue(postRepository.updatePost(1L, update).getChanges().isEmpty());
+        assertEquals(version, postRepository.findVersion(1L).getVersion());
+        Assertions.assertThrows(NoSuchElementException.class, () -> postRepository.updatePost(3L, update));
+    }
+
+    @Test
+    void updatePost_shouldReturnReplacedImageHash() throws Exception {
+        var oldImage = saveImage("Old Post Image".getBytes());
+        var postId = postRepository.savePost("Title", oldImage, "tag", "Text");
+        var update = new PostUpdate();
+        update.setImage(saveImage("New Post Image".getBytes()));
+
+        var updated = postRepository.updatePost(postId, update);
+
+        assertEquals(oldImage.getHash(), updated.getOldImageHash());
+        assertEquals(update.getImage(), updated.getChanges().getImage());
+        postRepository.deleteUnusedImages(List.of(updated.getOldImageHash()));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM image_blob WHERE hash = ?", Integer.class, oldImage.getHash()));
+    }
+
+    @Test
+    void findImageById_shouldReturnImageBytes() throws Exception {
+        assertArrayEquals("Post Image Content Two".getBytes(), postRepository.findImageById(2L));
+        Assertions.assertThrows(Exception.class, () -> postRepository.findImageById(3L));
+    }
+
+    @Test
+    void findImageMetadata_shouldReturnStoredImageMetadata() throws Exception {
+        var image = new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x00};
+        var postId = postRepository.savePost("Title", saveImage(image), "tag", "Text");
+
+        var metadata = postRepository.findImageMetadata(postId);
+
+        assertEquals("image/jpeg", metadata.getContentType());
+        assertEquals(Images.sha256Hex(image), metadata.getHash());
+        assertEquals(4L, metadata.getSize());
+        assertEquals(22L, postRepository.findImageMetadata(1L).getSize());
+    }
+
+    @Test
+    void writeImage_shouldStreamRequestedBytes() throws Exception {
+        var out = new ByteArrayOutputStream();
+
+        postRepository.writeImage(2L, 5, 5, out);
+
+        assertArrayEquals("Image".getBytes(), out.toByteArray());
+    }
+
+    @Test
+    void moveImagesToStore_shouldMoveImagesOutOfPostRows() throws Exception {
+        assertEquals(1, postRepository.moveImagesToStore(1));
+        assertEquals(1, postRepository.moveImagesToStore(1));
+        assertEquals(0, postRepository.moveImagesToStore(1));
+
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from post where image is not null", Integer.class));
+        var image = "Post Image Content Two".getBytes();
+        assertArrayEquals(image, postRepository.findImageById(2L));
+        assertEquals(Images.sha256Hex(image), postRepository.findImageMetadata(2L).getHash());
+        assertEquals(22L, postRepository.findImageMetadata(2L).getSize());
+        var out = new ByteArrayOutputStream();
+        postRepository.writeImage(2L, 5, 5, out);
+        assertArrayEquals("Image".getBytes(), out.toByteArray());
+    }
+
+    @Test
+    void savePost_shouldStoreSameImageOnce() throws Exception {
+        var image = "Shared Image".getBytes();
+
+        postRepository.savePost("Post 3", saveImage(image), "Tag3", "Post Text3");
+        postRepository.savePost("Post 4", saveImage(image), "Tag3", "Post Text4");
+
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from image_blob where hash = ?", Integer.class,
+                Images.sha256Hex(image)));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from image_blob where hash like 'upload-%'", Integer.class));
+    }
+
+    @Test
+    void saveImage_shouldRejectImageLargerThanDeclared() {
+        var image = "Too Large Image".getBytes();
+
+        Assertions.assertThrows(Exception.class, () -> postRepository.saveImage(new ByteArrayInputStream(image), image.length - 1));
+
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from image_blob where hash = ? or hash like 'upload-%'",
+                Integer.class, Images.sha256Hex(image)));
+    }
+
+    @Test
+    void addLikesCount_shouldChangeLikesAtomically() throws Exception {
+        assertEquals(11, postRepository.addLikesCount(1L, 1));
+        assertEquals(10, postRepository.addLikesCount(1L, -1));
+        Assertions.assertThrows(Exception.class, () -> postRepository.addLikesCount(3L, 1));
+    }
+
+    @Test
+    void addLikesCounts_shouldApplyAllDeltas() throws Exception {
+        postRepository.addLikesCounts(Map.of(1L, 5L, 2L, -2L));
+
+        assertEquals(15, postRepository.findById(1L).getLikesCount());
+        assertEquals(3, postRepository.findById(2L).getLikesCount());
     }
 
     @Test
@@ -116,9 +365,86 @@ class PostRepositoryTest {
     void delete_shouldDeletePostFromDb() throws Exception {
         var postId = 1L;
 
-        postRepository.delete(postId);
+        assertEquals(new DeletedPost(postId, List.of("Tag1", "Tag2"), null), postRepository.delete(postId));
 
         Assertions.assertThrows(Exception.class, () -> postRepository.findById(postId));
+        assertNull(postRepository.delete(postId));
+    }
+
+    @Test
+    void deletePosts_shouldDeletePostsWithCommentsAndTags() throws Exception {
+        jdbcTemplate.execute("INSERT INTO comment (post_id, text) VALUES (1, 'Comment 1'), (2, 'Comment 2')");
+
+        var deleted = postRepository.deletePosts(List.of(1L, 2L, 3L));
+
+        assertEquals(List.of(1L, 2L), deleted.stream().map(DeletedPost::getId).sorted().toList());
+        assertEquals(List.of("Tag1", "Tag2"), deleted.stream().filter(post -> post.getId() == 1L).findFirst().orElseThrow().getTags());
+        assertEquals(0, postRepository.getPostCount(""));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM comment", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM post_tag", Integer.class));
+        assertEquals(0, postRepository.getPostCountByText("Text1"));
+    }
+
+    @Test
+    void findPostIdsByTag_shouldReturnIdsInOrder() {
+        assertEquals(List.of(1L, 2L), postRepository.findPostIdsByTag("Tag2", 5));
+        assertEquals(List.of(1L), postRepository.findPostIdsByTag("Tag2", 1));
+        assertEquals(List.of(), postRepository.findPostIdsByTag("Tag4", 5));
+    }
+
+    @Test
+    void deleteUnusedImages_shouldKeepImagesOfOtherPosts() throws Exception {
+        var image = saveImage("Shared Post Image".getBytes());
+        var first = postRepository.savePost("Shared 1", image, "", "Text");
+        var second = postRepository.savePost("Shared 2", image, "", "Text");
+
+        postRepository.deleteUnusedImages(List.of(postRepository.delete(first).getImageHash()));
+        var out = new ByteArrayOutputStream();
+        postRepository.writeImage(second, 0, image.getSize(), out);
+        assertArrayEquals("Shared Post Image".getBytes(), out.toByteArray());
+
+        postRepository.deleteUnusedImages(List.of(postRepository.delete(second).getImageHash()));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM image_blob WHERE hash = ?", Integer.class, image.getHash()));
+    }
+
+    @Test
+    void deleteUnusedImages_shouldWaitForPostSavedWithSameImage() throws Exception {
+        var image = saveImage("Reused Post Image".getBytes());
+        postRepository.delete(postRepository.savePost("Deleted", image, "", "Text"));
+        var saved = new CountDownLatch(1);
+        var commit = new CountDownLatch(1);
+        var save = CompletableFuture.supplyAsync(() -> new TransactionTemplate(transactionManager).execute(status -> {
+            var postId = postRepository.savePost("Reused", image, "", "Text");
+            saved.countDown();
+            try {
+                commit.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return postId;
+        }));
+        saved.await();
+
+        var delete = CompletableFuture.runAsync(() -> postRepository.deleteUnusedImages(List.of(image.getHash())));
+        Thread.sleep(200);
+        commit.countDown();
+
+        var postId = save.get(5, TimeUnit.SECONDS);
+        delete.get(5, TimeUnit.SECONDS);
+        assertArrayEquals("Reused Post Image".getBytes(), postRepository.findImageById(postId));
+    }
+
+    @Test
+    void savePost_shouldFailWhenImageWasRemovedAfterItWasStored() {
+        var image = saveImage("Removed Post Image".getBytes());
+        postRepository.deleteUnusedImages(List.of(image.getHash()));
+
+        Assertions.assertThrows(ConcurrencyFailureException.class, () -> postRepository.savePost("Removed", image, "", "Text"));
+        assertEquals(2, postRepository.getPostCount(""));
+    }
+
+    private ImageMetadata saveImage(byte[] image) {
+        return postRepository.saveImage(new ByteArrayInputStream(image), image.length);
     }
 
-}
\ No newline at end of file
+}
@@ -11,6 +11,7 @@ import ru.yandex.practicum.repository.CommentRepository;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.times;
@@ -40,17 +41,19 @@ class CommentServiceTest {
 
     @Test
     void deleteCommentFromPost_shouldCallRepository() {
+        Long postId = 1L;
         Long commentId = 1L;
-        commentService.deleteCommentFromPost(commentId);
-        verify(commentRepository, times(1)).deleteCommentById(commentId);
+        commentService.deleteCommentFromPost(postId, commentId);
+        verify(commentRepository, times(1)).deleteCommentById(postId, commentId);
     }
 
     @Test
     void updateComment_shouldCallRepository() {
+        Long postId = 1L;
         Long commentId = 1L;
         String newText = "Updated comment";
-        commentService.updateComment(commentId, newText);
-        verify(commentRepository, times(1)).updateComment(commentId, newText);
+        commentService.updateComment(postId, commentId, newText);
+        verify(commentRepository, times(1)).updateComment(postId, commentId, newText);
     }
 
     @Test
@@ -66,6 +69,29 @@ class CommentServiceTest {
         verify(commentRepository, times(1)).findAllCommentsByPostId(postId);
     }
 
+    @Test
+    void findAllCommentsByPostIds_shouldReturnCommentsGroupedByPostId() {
+        List<Long> postIds = List.of(1L, 2L);
+        Map<Long, List<Comment>> expectedComments = Map.of(
+                1L, List.of(new Comment(1L, 1L, "Comment 1")),
+                2L, List.of(new Comment(2L, 2L, "Comment 2"))
+        );
+        when(commentRepository.findAllCommentsByPostIds(postIds)).thenReturn(expectedComments);
+        Map<Long, List<Comment>> actualComments = commentService.findAllCommentsByPostIds(postIds);
+        assertEquals(expectedComments, actualComments);
+        verify(commentRepository, times(1)).findAllCommentsByPostIds(postIds);
+    }
+
+    @Test
+    void countCommentsByPostIds_shouldReturnCountsByPostId() {
+        List<Long> postIds = List.of(1L, 2L);
+        Map<Long, Integer> expectedCounts = Map.of(1L, 3);
+        when(commentRepository.countCommentsByPostIds(postIds)).thenReturn(expectedCounts);
+        Map<Long, Integer> actualCounts = commentService.countCommentsByPostIds(postIds);
+        assertEquals(expectedCounts, actualCounts);
+        verify(commentRepository, times(1)).countCommentsByPostIds(postIds);
+    }
+
     @Test
     void deleteCommentsByPostId_shouldCallRepository() {
         Long postId = 1L;
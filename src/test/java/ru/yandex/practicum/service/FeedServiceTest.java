@@ -0,0 +1,176 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import ru.yandex.practicum.model.Paging;
+import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.model.PostPage;
+import ru.yandex.practicum.model.PostVersion;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FeedServiceTest {
+
+    @Mock
+    private PostService postService;
+
+    @Mock
+    private CommentService commentService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private FeedService feedService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        feedService = new FeedService(postService, commentService, executor(), transactionManager, Duration.ofSeconds(2));
+    }
+
+    @Test
+    void findFeed_shouldLoadCountAndPageConcurrently() {
+        var pageLoading = new CountDownLatch(1);
+        when(postService.findAllPosts("tag", 2, 2)).thenAnswer(invocation -> {
+            pageLoading.countDown();
+            return List.of(new Post(3L, "Title 3", null, "Text 3", "tag", 0), new Post(4L, "Title 4", null, "Text 4", "tag", 0));
+        });
+        // the count only finishes once the page query has started
+        when(postService.getPostCount("tag")).thenAnswer(invocation -> pageLoading.await(1, TimeUnit.SECONDS) ? 5 : -1);
+        when(commentService.countCommentsByPostIds(List.of(3L, 4L))).thenReturn(Map.of(3L, 2));
+
+        PostPage page = feedService.findFeed("tag", 2, 2);
+
+        assertEquals(List.of(3L, 4L), page.getPosts().stream().map(Post::getId).toList());
+        assertEquals(List.of(2, 0), page.getPosts().stream().map(Post::getCommentCount).toList());
+        assertEquals(3, page.getPaging().getPageCount());
+        assertTrue(page.getPaging().hasNext());
+    }
+
+    @Test
+    void findFeed_shouldFailAsSoonAsOneQueryFails() {
+        when(postService.getPostCount("")).thenAnswer(invocation -> {
+            Thread.sleep(10_000);
+            return 5;
+        });
+        when(postService.findAllPosts("", 1, 5)).thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        var start = System.nanoTime();
+        assertThrows(DataAccessResourceFailureException.class, () -> feedService.findFeed("", 1, 5));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        verify(commentService, never()).countCommentsByPostIds(List.of());
+    }
+
+    @Test
+    void findFeed_shouldTimeOut() {
+        feedService = new FeedService(postService, commentService, executor(), transactionManager, Duration.ofMillis(100));
+        when(postService.getPostCount("")).thenAnswer(invocation -> {
+            Thread.sleep(10_000);
+            return 5;
+        });
+        when(postService.findAllPosts("", 1, 5)).thenReturn(List.of());
+
+        assertThrows(QueryTimeoutException.class, () -> feedService.findFeed("", 1, 5));
+    }
+
+    @Test
+    void findFeed_shouldRunQueriesInTransactionsWithFeedTimeout() {
+        when(postService.getPostCount("")).thenReturn(1);
+        when(postService.findAllPosts("", 1, 5)).thenReturn(List.of(new Post(3L, "Title 3", null, "Text 3", "tag", 0)));
+        when(commentService.countCommentsByPostIds(List.of(3L))).thenReturn(Map.of());
+
+        feedService.findFeed("", 1, 5);
+
+        var definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager, atLeast(2)).getTransaction(definition.capture());
+        definition.getAllValues().forEach(value -> {
+            assertEquals(2, value.getTimeout());
+            assertTrue(value.isReadOnly());
+        });
+    }
+
+    @Test
+    void findFeed_shouldAddCommentCountsToCursorPage() {
+        var paging = Paging.ofCursors(5, null, null);
+        when(postService.findPostPage("", 2L, null, 5))
+                .thenReturn(new PostPage(List.of(new Post(3L, "Title 3", null, "Text 3", "tag", 0)), paging));
+        when(commentService.countCommentsByPostIds(List.of(3L))).thenReturn(Map.of(3L, 4));
+
+        PostPage page = feedService.findFeed("", 2L, null, 5);
+
+        assertEquals(4, page.getPosts().get(0).getCommentCount());
+        assertEquals(paging, page.getPaging());
+    }
+
+    @Test
+    void findFeedTag_shouldChangeWithPostVersionsAndCount() {
+        var modifiedAt = Instant.parse("2025-01-01T00:00:00Z");
+        when(postService.getPostCount("")).thenReturn(2);
+        when(postService.findPageVersions("", 1, 5)).thenReturn(List.of(
+                new PostVersion(1L, 0, modifiedAt), new PostVersion(2L, 3, modifiedAt)));
+        var etag = feedService.findFeedTag("", 1, null, null, 5);
+
+        assertTrue(etag.startsWith("W/\""));
+        assertEquals(etag, feedService.findFeedTag("", 1, null, null, 5));
+        assertNotEquals(etag, feedService.findFeedTag("", 2, null, null, 5));
+
+        when(postService.findPageVersions("", 1, 5)).thenReturn(List.of(
+                new PostVersion(1L, 0, modifiedAt), new PostVersion(2L, 4, modifiedAt)));
+        assertNotEquals(etag, feedService.findFeedTag("", 1, null, null, 5));
+    }
+
+    @Test
+    void feedTag_shouldMatchFindFeedTagOnlyWhenPageShowsCurrentVersions() {
+        var modifiedAt = Instant.parse("2025-01-01T00:00:00Z");
+        when(postService.getPostCount("")).thenReturn(7);
+        when(postService.findPageVersions("", 1, 5)).thenReturn(List.of(
+                new PostVersion(1L, 0, modifiedAt), new PostVersion(2L, 3, modifiedAt)));
+        when(postService.findPageVersions("", 2L, null, 1)).thenReturn(List.of(
+                new PostVersion(3L, 1, modifiedAt), new PostVersion(4L, 0, modifiedAt)));
+        var first = new Post(1L, "Title 1", null, "Text 1", "tag", 0);
+        var second = new Post(2L, "Title 2", null, "Text 2", "tag", 0);
+        second.setVersion(3);
+        var third = new Post(3L, "Title 3", null, "Text 3", "tag", 0);
+        third.setVersion(1);
+
+        var page = new PostPage(List.of(first, second), new Paging(7, 1, 5));
+        assertEquals(feedService.findFeedTag("", 1, null, null, 5), feedService.feedTag(page, "", 1, null, null, 5));
+        var cursorPage = new PostPage(List.of(third), Paging.ofCursors(1, 3L, 3L));
+        assertEquals(feedService.findFeedTag("", 1, 2L, null, 1), feedService.feedTag(cursorPage, "", 1, 2L, null, 1));
+
+        // a page loaded from a cache entry written before the second post changed
+        second.setVersion(2);
+        assertNotEquals(feedService.findFeedTag("", 1, null, null, 5), feedService.feedTag(page, "", 1, null, null, 5));
+    }
+
+    // the queries left sleeping by the failure tests must not keep the JVM alive
+    private static SimpleAsyncTaskExecutor executor() {
+        var executor = new SimpleAsyncTaskExecutor("feed-test-");
+        executor.setDaemon(true);
+        return executor;
+    }
+
+}
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.config.DataSourceConfig;
+import ru.yandex.practicum.model.ImageVariant;
+import ru.yandex.practicum.repository.ImageVariantRepository;
+import ru.yandex.practicum.util.Images;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(DataSourceConfig.class)
+class ImageVariantBackfillTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ImageVariantRepository imageVariantRepository;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        jdbcTemplate.execute("DELETE FROM comment");
+        jdbcTemplate.execute("DELETE FROM post");
+        jdbcTemplate.execute("ALTER TABLE post ALTER COLUMN id RESTART WITH 1");
+        var image = png(1000, 1000);
+        jdbcTemplate.update("INSERT INTO post (title, image, image_hash, text, tags) VALUES (?, ?, ?, ?, ?)",
+                "Post 1", image, Images.sha256Hex(image), "Post Text1", "Tag1");
+        var notAnImage = "Post Image Content Two".getBytes();
+        jdbcTemplate.update("INSERT INTO post (title, image, image_hash, text, tags) VALUES (?, ?, ?, ?, ?)",
+                "Post 2", notAnImage, Images.sha256Hex(notAnImage), "Post Text2", "Tag2");
+        jdbcTemplate.update("INSERT INTO post (title, text, tags) VALUES (?, ?, ?)", "Post 3", "Post Text3", "Tag3");
+    }
+
+    @Test
+    void backfill_shouldGenerateVariantsOfExistingPosts() {
+        var backfill = new ImageVariantBackfill(imageVariantRepository, imageVariantService, true, 1);
+
+        backfill.backfill();
+        backfill.backfill();
+        assertFalse(backfill.isDone());
+        backfill.backfill();
+
+        assertTrue(backfill.isDone());
+        var thumb = imageVariantRepository.findVariantMetadata(1L, ImageVariant.THUMB);
+        assertNotNull(thumb);
+        assertEquals("image/png", thumb.getContentType());
+        assertTrue(thumb.isPresent());
+        var notAnImage = imageVariantRepository.findVariantMetadata(2L, ImageVariant.THUMB);
+        assertNotNull(notAnImage);
+        assertFalse(notAnImage.isPresent());
+        assertNull(imageVariantRepository.findVariantMetadata(3L, ImageVariant.THUMB));
+        assertTrue(imageVariantRepository.findPostIdsWithoutVariants(0, 10).isEmpty());
+    }
+
+    @Test
+    void backfill_shouldStartNewPassAfterVariantsFailedToSave() {
+        var backfill = new ImageVariantBackfill(imageVariantRepository, imageVariantService, true, 10);
+        backfill.backfill();
+        backfill.backfill();
+        assertTrue(backfill.isDone());
+
+        jdbcTemplate.update("DELETE FROM post_image_variant WHERE post_id = 1");
+        jdbcTemplate.execute("ALTER TABLE post_image_variant RENAME TO post_image_variant_off");
+        try {
+            imageVariantService.generateVariants(1L);
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE post_image_variant_off RENAME TO post_image_variant");
+        }
+        assertNull(imageVariantRepository.findVariantMetadata(1L, ImageVariant.THUMB));
+
+        backfill.backfill();
+
+        assertNotNull(imageVariantRepository.findVariantMetadata(1L, ImageVariant.THUMB));
+    }
+
+    @Test
+    void findVariantMetadata_shouldIgnoreVariantsOfReplacedImage() {
+        imageVariantService.generateVariants(1L);
+        assertNotNull(imageVariantRepository.findVariantMetadata(1L, ImageVariant.MEDIUM));
+
+        jdbcTemplate.update("UPDATE post SET image_hash = 'other' WHERE id = 1");
+
+        assertNull(imageVariantRepository.findVariantMetadata(1L, ImageVariant.MEDIUM));
+        assertEquals(1L, imageVariantRepository.findPostIdsWithoutVariants(0, 10).get(0));
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        var out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,101 @@
+package ru.yandex.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataAccessResourceFailureException;
+import ru.yandex.practicum.config.CacheConfig;
+import ru.yandex.practicum.repository.PostRepository;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.anyMap;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class LikesWriteBehindBufferTest {
+
+    @Mock
+    private PostRepository postRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ConcurrentMapCacheManager cacheManager;
+
+    private LikesWriteBehindBuffer likesBuffer;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        cacheManager = new ConcurrentMapCacheManager(CacheConfig.POSTS);
+        likesBuffer = new LikesWriteBehindBuffer(postRepository, cacheManager, meterRegistry, true);
+    }
+
+    @Test
+    void flush_shouldWriteCoalescedDeltasInOneBatch() {
+        likesBuffer.add(1L, 1);
+        likesBuffer.add(1L, 1);
+        likesBuffer.add(1L, 1);
+        likesBuffer.add(2L, -1);
+        likesBuffer.add(3L, 1);
+        likesBuffer.add(3L, -1);
+        cacheManager.getCache(CacheConfig.POSTS).put(1L, "post 1");
+        cacheManager.getCache(CacheConfig.POSTS).put(4L, "post 4");
+
+        assertEquals(3, likesBuffer.getPending(1L));
+        assertEquals(4, meterRegistry.get("blog.likes.pending.delta").gauge().value());
+
+        likesBuffer.flush();
+
+        verify(postRepository, times(1)).addLikesCounts(Map.of(1L, 3L, 2L, -1L));
+        assertEquals(0, likesBuffer.getPending(1L));
+        assertEquals(0, likesBuffer.getPendingPosts());
+        assertEquals(0, meterRegistry.get("blog.likes.pending.delta").gauge().value());
+        assertEquals(4, meterRegistry.get("blog.likes.flushed.delta").counter().count());
+        assertEquals(2, meterRegistry.get("blog.likes.flushed.posts").counter().count());
+        assertNull(cacheManager.getCache(CacheConfig.POSTS).get(1L));
+        assertNotNull(cacheManager.getCache(CacheConfig.POSTS).get(4L));
+    }
+
+    @Test
+    void flush_shouldSkipDatabaseWhenNothingIsPending() {
+        likesBuffer.flush();
+
+        verify(postRepository, never()).addLikesCounts(anyMap());
+    }
+
+    @Test
+    void flush_shouldKeepDeltasWhenWriteFails() {
+        likesBuffer.add(1L, 1);
+        doThrow(new DataAccessResourceFailureException("db is down")).when(postRepository).addLikesCounts(anyMap());
+
+        likesBuffer.flush();
+
+        assertEquals(1, likesBuffer.getPending(1L));
+        assertEquals(1, meterRegistry.get("blog.likes.flush.failures").counter().count());
+    }
+
+    @Test
+    void flush_shouldKeepOnlyPostsLikedSinceLastFlush() {
+        likesBuffer.add(1L, 1);
+        likesBuffer.add(2L, 1);
+        likesBuffer.flush();
+        likesBuffer.add(2L, 1);
+        likesBuffer.add(3L, 1);
+        likesBuffer.add(3L, -1);
+
+        assertEquals(1, likesBuffer.getPendingPosts());
+        assertEquals(1, likesBuffer.getPending(2L));
+        assertEquals(0, likesBuffer.getPending(3L));
+    }
+
+}
@@ -0,0 +1,135 @@
+package ru.yandex.practicum.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.config.DataSourceConfig;
+import ru.yandex.practicum.model.ArchivedPost;
+import ru.yandex.practicum.model.Comment;
+import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.repository.CommentRepository;
+import ru.yandex.practicum.repository.PostRepository;
+import ru.yandex.practicum.repository.PostSearch;
+import ru.yandex.practicum.util.Images;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = "blog.archive.batch-size=2")
+@ActiveProfiles("test")
+@Import(DataSourceConfig.class)
+class PostArchiveServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PostArchiveService postArchiveService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private PostSearch postSearch;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM comment");
+        jdbcTemplate.execute("DELETE FROM post");
+        jdbcTemplate.execute("ALTER TABLE post ALTER COLUMN id RESTART WITH 1");
+        var image = "Post Image Content One".getBytes();
+        jdbcTemplate.update("INSERT INTO post (title, image, image_hash, text, tags, likes_count) VALUES (?, ?, ?, ?, ?, ?)",
+                "Post 1", image, Images.sha256Hex(image), "Post Text1", "Tag1 Tag2", 10);
+        jdbcTemplate.update("INSERT INTO post (title, text, tags, likes_count) VALUES (?, ?, ?, ?)",
+                "Post 2", "Post Text2", "Tag2", 5);
+        jdbcTemplate.update("INSERT INTO post (title, text, tags, likes_count) VALUES (?, ?, ?, ?)",
+                "Post 3", "Post Text3", "", 0);
+        jdbcTemplate.execute("INSERT INTO comment (post_id, text) VALUES (1, 'Comment 1'), (1, 'Comment 2'), (3, 'Comment 3')");
+        postSearch.rebuild();
+    }
+
+    @Test
+    void exportPosts_shouldWriteOnePostPerLine() throws Exception {
+        var out = new ByteArrayOutputStream();
+
+        assertEquals(3, postArchiveService.exportPosts(out));
+
+        var lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        var first = objectMapper.readValue(lines[0], ArchivedPost.class);
+        assertEquals(1L, first.getId());
+        assertEquals("Tag1 Tag2", first.getTags());
+        assertEquals(10, first.getLikesCount());
+        assertEquals(List.of("Comment 1", "Comment 2"), first.getComments());
+        assertArrayEquals("Post Image Content One".getBytes(), first.getImage());
+        assertNull(objectMapper.readValue(lines[1], ArchivedPost.class).getImage());
+        assertEquals(List.of("Comment 3"), objectMapper.readValue(lines[2], ArchivedPost.class).getComments());
+    }
+
+    @Test
+    void importPosts_shouldRestoreExportedPosts() throws Exception {
+        var out = new ByteArrayOutputStream();
+        postArchiveService.exportPosts(out);
+
+        assertEquals(3, postArchiveService.importPosts(new ByteArrayInputStream(out.toByteArray())));
+
+        var posts = postRepository.findAll("", 1, 10);
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), posts.stream().map(Post::getId).toList());
+        assertEquals(new Post(4L, "Post 1", null, "Post Text1", "Tag1 Tag2", 10), posts.get(3));
+        assertArrayEquals("Post Image Content One".getBytes(), postRepository.findImageById(4L));
+        assertEquals(List.of("Comment 1", "Comment 2"),
+                commentRepository.findAllCommentsByPostId(4L).stream().map(Comment::getText).toList());
+        assertEquals(1, postRepository.getPostCount("Tag1"));
+        assertEquals(List.of(3L, 6L), postRepository.findAllByText("Text3", 1, 10).stream().map(Post::getId).toList());
+    }
+
+    @Test
+    void importPosts_shouldKeepBatchesBeforeInvalidLine() {
+        var image = Base64.getEncoder().encodeToString("Imported Image".getBytes());
+        var archive = """
+                {"title":"Imported 1","text":"Text","tags":"Tag9","image":"%s","comments":["Nice"]}
+                {"title":"Imported 2","text":"Text","unknown":true}
+                {"title":"Imported 3",
+                """.formatted(image);
+
+        assertThrows(Exception.class, () -> postArchiveService.importPosts(new ByteArrayInputStream(archive.getBytes())));
+
+        assertEquals(5, postRepository.getPostCount(""));
+        assertEquals(1, postRepository.getPostCount("Tag9"));
+    }
+
+    @Test
+    void importPosts_shouldRemoveImagesOfBatchNotInserted() {
+        var image = "Not Imported Image".getBytes();
+        var archive = """
+                {"title":"Imported 1","text":"Text","tags":"Tag9","image":"%s"}
+                {"title":"Imported 2",
+                """.formatted(Base64.getEncoder().encodeToString(image));
+
+        assertThrows(Exception.class, () -> postArchiveService.importPosts(new ByteArrayInputStream(archive.getBytes())));
+
+        assertEquals(3, postRepository.getPostCount(""));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM image_blob WHERE hash = ?", Integer.class,
+                Images.sha256Hex(image)));
+    }
+
+}
@@ -0,0 +1,101 @@
+package ru.yandex.practicum.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.config.CacheConfig;
+import ru.yandex.practicum.config.DataSourceConfig;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.cache.type=caffeine")
+@ActiveProfiles("test")
+@Import(DataSourceConfig.class)
+class PostCacheTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        jdbcTemplate.execute("DELETE FROM comment");
+        jdbcTemplate.execute("ALTER TABLE comment ALTER COLUMN id RESTART WITH 1");
+        jdbcTemplate.execute("DELETE FROM post");
+        jdbcTemplate.execute("ALTER TABLE post ALTER COLUMN id RESTART WITH 1");
+        jdbcTemplate.update("INSERT INTO post (title, image, text, tags, likes_count) VALUES (?, ?, ?, ?, ?)",
+                "Post 1", "Post Image Content One".getBytes(), "Post Text1", "Tag1 Tag2", 10);
+        jdbcTemplate.execute("INSERT INTO comment (post_id, text) VALUES (1, 'Comment 1')");
+    }
+
+    @Test
+    void findById_shouldBeServedFromCacheUntilPostChanges() throws Exception {
+        assertEquals("Post 1", postService.findById(1L).getTitle());
+        jdbcTemplate.execute("UPDATE post SET title = 'Changed' WHERE id = 1");
+
+        assertEquals("Post 1", postService.findById(1L).getTitle());
+
+        postService.changePostLikesCount(1L, true);
+
+        var post = postService.findById(1L);
+        assertEquals("Changed", post.getTitle());
+        assertEquals(11, post.getLikesCount());
+        Cache<Object, Object> postsCache = ((CaffeineCache) cacheManager.getCache(CacheConfig.POSTS)).getNativeCache();
+        assertTrue(postsCache.stats().hitCount() > 0);
+    }
+
+    @Test
+    void findAllPosts_shouldBeServedFromCacheUntilPostIsSaved() throws Exception {
+        assertEquals(1, postService.findAllPosts("", 1, 5).size());
+        jdbcTemplate.update("INSERT INTO post (title, text, tags) VALUES ('Post 2', 'Post Text2', 'Tag3')");
+
+        assertEquals(1, postService.findAllPosts("", 1, 5).size());
+
+        postService.savePost("Post 3", new MockMultipartFile("image", new byte[0]), "Tag3", "Post Text3");
+
+        assertEquals(3, postService.findAllPosts("", 1, 5).size());
+    }
+
+    @Test
+    void findAllCommentsByPostId_shouldBeServedFromCacheUntilCommentsChange() {
+        assertEquals(1, commentService.findAllCommentsByPostId(1L).size());
+        jdbcTemplate.execute("INSERT INTO comment (post_id, text) VALUES (1, 'Comment 2')");
+
+        assertEquals(1, commentService.findAllCommentsByPostId(1L).size());
+
+        commentService.addCommentToPost(1L, "Comment 3");
+
+        assertEquals(3, commentService.findAllCommentsByPostId(1L).size());
+
+        commentService.deleteCommentFromPost(1L, 1L);
+
+        assertEquals(2, commentService.findAllCommentsByPostId(1L).size());
+    }
+
+    @Test
+    void findById_shouldNotShareMutableInstancesBetweenCallers() throws Exception {
+        var post = postService.findById(1L);
+        post.setTitle("Local change");
+
+        assertEquals("Post 1", postService.findById(1L).getTitle());
+    }
+
+}
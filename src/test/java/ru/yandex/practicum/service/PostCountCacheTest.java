@@ -0,0 +1,104 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import ru.yandex.practicum.repository.PostRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PostCountCacheTest {
+
+    @Mock
+    private PostRepository postRepository;
+
+    private PostCountCache postCountCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        postCountCache = new PostCountCache(postRepository, true, 100, 0);
+    }
+
+    @Test
+    void getPostCount_shouldQueryDatabaseOncePerSearch() {
+        when(postRepository.getPostCount("")).thenReturn(10);
+        when(postRepository.getPostCount("tag1")).thenReturn(3);
+
+        assertEquals(10, postCountCache.getPostCount(""));
+        assertEquals(10, postCountCache.getPostCount(""));
+        assertEquals(3, postCountCache.getPostCount("tag1"));
+        assertEquals(3, postCountCache.getPostCount(" tag1 "));
+
+        verify(postRepository, times(1)).getPostCount("");
+        verify(postRepository, times(1)).getPostCount("tag1");
+    }
+
+    @Test
+    void applyWrite_shouldAdjustCachedCountsOfMatchingSearches() {
+        when(postRepository.getPostCount("")).thenReturn(10);
+        when(postRepository.getPostCount("tag1")).thenReturn(3);
+        when(postRepository.getPostCount("tag1 tag2")).thenReturn(1);
+        when(postRepository.getPostCount("tag2|tag3")).thenReturn(5);
+        postCountCache.getPostCount("");
+        postCountCache.getPostCount("tag1");
+        postCountCache.getPostCount("tag1 tag2");
+        postCountCache.getPostCount("tag2|tag3");
+
+        write(null, List.of("tag1", "tag2"));
+        write(List.of("tag3"), null);
+        write(List.of("tag1"), List.of("tag3"));
+
+        assertEquals(10, postCountCache.getPostCount(""));
+        assertEquals(3, postCountCache.getPostCount("tag1"));
+        assertEquals(2, postCountCache.getPostCount("tag1 tag2"));
+        assertEquals(6, postCountCache.getPostCount("tag2|tag3"));
+        verify(postRepository, times(1)).getPostCount("");
+    }
+
+    @Test
+    void getPostCount_shouldNotCacheCountLoadedDuringWrite() {
+        when(postRepository.getPostCount("")).thenReturn(10);
+
+        postCountCache.beginWrite();
+        postCountCache.getPostCount("");
+        postCountCache.applyWrite(null, List.of());
+        postCountCache.endWrite();
+        postCountCache.getPostCount("");
+
+        verify(postRepository, times(2)).getPostCount("");
+    }
+
+    @Test
+    void getPostCount_shouldUseEstimateForLargeTables() {
+        postCountCache = new PostCountCache(postRepository, true, 100, 1_000_000);
+        when(postRepository.estimatePostCount()).thenReturn(2_000_000L);
+
+        assertEquals(2_000_000, postCountCache.getPostCount(""));
+        verify(postRepository, never()).getPostCount("");
+    }
+
+    @Test
+    void invalidateAll_shouldDropCachedCounts() {
+        when(postRepository.getPostCount("")).thenReturn(10, 12);
+
+        postCountCache.getPostCount("");
+        postCountCache.invalidateAll();
+
+        assertEquals(12, postCountCache.getPostCount(""));
+    }
+
+    private void write(List<String> oldTags, List<String> newTags) {
+        postCountCache.beginWrite();
+        postCountCache.applyWrite(oldTags, newTags);
+        postCountCache.endWrite();
+    }
+
+}
@@ -2,21 +2,39 @@ package ru.yandex.practicum.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.model.DeletedPost;
+import ru.yandex.practicum.model.ImageMetadata;
 import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.model.PostPage;
+import ru.yandex.practicum.model.PostUpdate;
+import ru.yandex.practicum.model.UpdatedPost;
 import ru.yandex.practicum.repository.PostRepository;
+import ru.yandex.practicum.util.Images;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -26,6 +44,15 @@ class PostServiceTest {
     @Mock
     private PostRepository postRepository;
 
+    @Mock
+    private LikesWriteBehindBuffer likesBuffer;
+
+    @Mock
+    private PostCountCache postCountCache;
+
+    @Mock
+    private ImageVariantService imageVariantService;
+
     @InjectMocks
     private PostService postService;
 
@@ -49,14 +76,85 @@ class PostServiceTest {
         verify(postRepository, times(1)).findAll(search, pageNumber, pageSize);
     }
 
+    @Test
+    void findPostPage_shouldReturnPostsAndCursorsAfterCursor() {
+        List<Post> fetched = List.of(
+                new Post(3L, "Title 3", null, "Text 3", "tag", 0),
+                new Post(4L, "Title 4", null, "Text 4", "tag", 0),
+                new Post(5L, "Title 5", null, "Text 5", "tag", 0)
+        );
+        when(postRepository.findAllAfter("", 2L, 3)).thenReturn(fetched);
+
+        PostPage page = postService.findPostPage("", 2L, null, 2);
+
+        assertEquals(fetched.subList(0, 2), page.getPosts());
+        assertEquals(3L, page.getPaging().getPreviousCursor());
+        assertEquals(4L, page.getPaging().getNextCursor());
+        assertTrue(page.getPaging().hasNext());
+    }
+
+    @Test
+    void findPostPage_shouldHaveNoPreviousCursorAfterZero() {
+        List<Post> fetched = List.of(
+                new Post(1L, "Title 1", null, "Text 1", "tag", 0),
+                new Post(2L, "Title 2", null, "Text 2", "tag", 0)
+        );
+        when(postRepository.findAllAfter("", 0L, 3)).thenReturn(fetched);
+
+        PostPage page = postService.findPostPage("", 0L, null, 2);
+
+        assertEquals(fetched, page.getPosts());
+        assertFalse(page.getPaging().hasPrevious());
+        assertFalse(page.getPaging().hasNext());
+    }
+
+    @Test
+    void findPostPage_shouldReturnPostsAndCursorsBeforeCursor() {
+        List<Post> fetched = List.of(
+                new Post(1L, "Title 1", null, "Text 1", "tag", 0),
+                new Post(2L, "Title 2", null, "Text 2", "tag", 0)
+        );
+        when(postRepository.findAllBefore("", 3L, 3)).thenReturn(fetched);
+
+        PostPage page = postService.findPostPage("", null, 3L, 2);
+
+        assertEquals(fetched, page.getPosts());
+        assertFalse(page.getPaging().hasPrevious());
+        assertEquals(2L, page.getPaging().getNextCursor());
+    }
+
     @Test
     void savePost_shouldSaveNewPost() throws IOException {
         String title = "New Post";
         MockMultipartFile image = new MockMultipartFile("image", "image.jpg", "image/jpeg", "image-content".getBytes());
         String tags = "tag1 tag2";
         String text = "This is a test post.";
+        ImageMetadata stored = new ImageMetadata("image/jpeg", "hash", 13L);
+        when(postRepository.saveImage(any(), eq(13L))).thenReturn(stored);
+        when(postRepository.savePost(eq(title), any(), eq(tags), eq(text))).thenReturn(3L);
         postService.savePost(title, image, tags, text);
-        verify(postRepository, times(1)).savePost(eq(title), eq(image.getBytes()), eq(tags), eq(text));
+        verify(postRepository, times(1)).savePost(title, stored, tags, text);
+        verify(postCountCache, times(1)).applyWrite(null, List.of("tag1", "tag2"));
+        verify(postCountCache, times(1)).endWrite();
+        verify(imageVariantService, times(1)).generateVariants(3L);
+    }
+
+    @Test
+    void savePost_shouldStoreImageAgainWhenItWasRemovedBeforeTheInsert() throws IOException {
+        MockMultipartFile image = new MockMultipartFile("image", "image.jpg", "image/jpeg", "image-content".getBytes());
+        ImageMetadata stored = new ImageMetadata("image/jpeg", "hash", 13L);
+        when(postRepository.saveImage(any(), eq(13L))).thenReturn(stored);
+        when(postRepository.savePost("Title", stored, "tag", "Text"))
+                .thenThrow(new ConcurrencyFailureException("Image hash was removed"))
+                .thenReturn(3L);
+
+        postService.savePost("Title", image, "tag", "Text");
+
+        verify(postRepository, times(2)).saveImage(any(), eq(13L));
+        verify(postRepository, times(1)).deleteUnusedImages(List.of("hash"));
+        verify(postCountCache, times(1)).applyWrite(null, List.of("tag"));
+        verify(postCountCache, times(2)).endWrite();
+        verify(imageVariantService, times(1)).generateVariants(3L);
     }
 
     @Test
@@ -71,47 +169,128 @@ class PostServiceTest {
         verify(postRepository, times(1)).findById(postId);
     }
 
+    @Test
+    void findImageById_shouldReturnImage() throws Exception {
+        Long postId = 1L;
+        byte[] expectedImage = "image-content".getBytes();
+        when(postRepository.findImageById(postId)).thenReturn(expectedImage);
+
+        byte[] actualImage = postService.findImageById(postId);
+
+        assertArrayEquals(expectedImage, actualImage);
+        verify(postRepository, times(1)).findImageById(postId);
+    }
+
+    @Test
+    void findImageMetadata_shouldReturnMetadata() throws Exception {
+        Long postId = 1L;
+        ImageMetadata expected = new ImageMetadata("image/png", "hash", 10L);
+        when(postRepository.findImageMetadata(postId)).thenReturn(expected);
+
+        assertEquals(expected, postService.findImageMetadata(postId));
+        verify(postRepository, times(1)).findImageMetadata(postId);
+    }
+
     @Test
     void getPostCount_shouldReturnCount() {
         String search = "test";
         int expectedCount = 42;
-        when(postRepository.getPostCount(search)).thenReturn(expectedCount);
+        when(postCountCache.getPostCount(search)).thenReturn(expectedCount);
 
         int actualCount = postService.getPostCount(search);
 
         assertEquals(expectedCount, actualCount);
-        verify(postRepository, times(1)).getPostCount(search);
+        verify(postCountCache, times(1)).getPostCount(search);
     }
 
     @Test
     void changePostLikesCount_shouldIncreaseLikes() throws Exception {
         Long postId = 1L;
-        Post post = new Post(postId, "Title", null, "Text", "tag1 tag2", 5);
-        when(postRepository.findById(postId)).thenReturn(post);
 
         postService.changePostLikesCount(postId, true);
 
-        assertEquals(6, post.getLikesCount());
-        verify(postRepository, times(1)).updatePost(post);
+        verify(postRepository, times(1)).addLikesCount(postId, 1);
+        verify(postRepository, never()).updatePost(any(), any());
     }
 
     @Test
     void changePostLikesCount_shouldDecreaseLikes() throws Exception {
         Long postId = 1L;
-        Post post = new Post(postId, "Title", null, "Text", "tag1 tag2", 5);
-        when(postRepository.findById(postId)).thenReturn(post);
 
         postService.changePostLikesCount(postId, false);
 
-        assertEquals(4, post.getLikesCount());
-        verify(postRepository, times(1)).updatePost(post);
+        verify(postRepository, times(1)).addLikesCount(postId, -1);
+        verify(postRepository, never()).updatePost(any(), any());
+    }
+
+    @Test
+    void changePostLikesCount_shouldBufferLikesWhenWriteBehindEnabled() throws Exception {
+        Long postId = 1L;
+        when(likesBuffer.isEnabled()).thenReturn(true);
+        when(likesBuffer.getPending(postId)).thenReturn(2L);
+        when(postRepository.findById(postId)).thenReturn(new Post(postId, "Title", null, "Text", "tag1 tag2", 5));
+
+        postService.changePostLikesCount(postId, true);
+
+        verify(likesBuffer, times(1)).add(postId, 1);
+        verify(postRepository, never()).addLikesCount(any(), anyInt());
+        assertEquals(7, postService.findById(postId).getLikesCount());
     }
 
     @Test
     void deletePost_shouldCallRepositoryDelete() {
         Long postId = 1L;
+        when(postRepository.delete(postId)).thenReturn(new DeletedPost(postId, List.of("tag1"), null));
         postService.deletePost(postId);
         verify(postRepository, times(1)).delete(postId);
+        verify(postCountCache, times(1)).applyWrite(List.of("tag1"), null);
+        verify(postCountCache, times(1)).endWrite();
+    }
+
+    @Test
+    void deletePost_shouldDeleteUnusedImage() {
+        Long postId = 1L;
+        when(postRepository.delete(postId)).thenReturn(new DeletedPost(postId, List.of(), "hash"));
+        postService.deletePost(postId);
+        verify(postRepository, times(1)).deleteUnusedImages(List.of("hash"));
+    }
+
+    @Test
+    void deletePost_shouldKeepCountsWhenPostWasDeletedAlready() {
+        Long postId = 1L;
+        when(postRepository.delete(postId)).thenReturn(null);
+        postService.deletePost(postId);
+        verify(postCountCache, never()).applyWrite(any(), any());
+        verify(postCountCache, times(1)).endWrite();
+        verify(postRepository, never()).deleteUnusedImages(any());
+    }
+
+    @Test
+    void deletePosts_shouldDeleteInBatches() {
+        ReflectionTestUtils.setField(postService, "deleteBatchSize", 2);
+        when(postRepository.deletePosts(List.of(1L, 2L))).thenReturn(List.of(
+                new DeletedPost(1L, List.of("tag1"), "hash"),
+                new DeletedPost(2L, List.of("tag2"), null)));
+        when(postRepository.deletePosts(List.of(3L))).thenReturn(List.of());
+
+        assertEquals(2, postService.deletePosts(List.of(1L, 2L, 2L, 3L)));
+
+        verify(postCountCache, times(1)).applyWrite(List.of("tag1"), null);
+        verify(postCountCache, times(1)).applyWrite(List.of("tag2"), null);
+        verify(postCountCache, times(2)).endWrite();
+        verify(postRepository, times(1)).deleteUnusedImages(Arrays.asList("hash", null));
+    }
+
+    @Test
+    void deletePostsByTag_shouldDeleteUntilNoPostsLeft() {
+        ReflectionTestUtils.setField(postService, "deleteBatchSize", 2);
+        when(postRepository.findPostIdsByTag("spam", 2)).thenReturn(List.of(1L, 2L), List.of(3L), List.of());
+        when(postRepository.deletePosts(any())).thenAnswer(invocation -> invocation.<List<Long>>getArgument(0).stream()
+                .map(id -> new DeletedPost(id, List.of("spam"), null))
+                .toList());
+
+        assertEquals(3, postService.deletePostsByTag("spam"));
+        verify(postRepository, times(2)).deletePosts(any());
     }
 
     @Test
@@ -121,19 +300,67 @@ class PostServiceTest {
         MockMultipartFile newImage = new MockMultipartFile("image", "newImage.jpg", "image/jpeg", "new-image-content".getBytes());
         String newTags = "newTag1 newTag2";
         String newText = "Updated text.";
+        ImageMetadata stored = new ImageMetadata("image/jpeg", "new-hash", 17L);
+        when(postRepository.saveImage(any(), eq(17L))).thenReturn(stored);
+        when(postRepository.updatePost(eq(postId), any()))
+                .thenAnswer(invocation -> new UpdatedPost(invocation.getArgument(1), List.of("oldTag1", "oldTag2"), "old-hash"));
 
-        Post existingPost = new Post(postId, "Old Title", null, "Old Text", "oldTag1 oldTag2", 10);
+        postService.updatePost(postId, newTitle, newImage, newTags, newText);
 
-        when(postRepository.findById(postId)).thenReturn(existingPost);
+        ArgumentCaptor<PostUpdate> update = ArgumentCaptor.forClass(PostUpdate.class);
+        verify(postRepository, times(1)).updatePost(eq(postId), update.capture());
+        assertEquals(newTitle, update.getValue().getTitle());
+        assertEquals(stored, update.getValue().getImage());
+        assertEquals(newTags, update.getValue().getTags());
+        assertEquals(newText, update.getValue().getText());
+        verify(postCountCache, times(1)).applyWrite(List.of("oldTag1", "oldTag2"), List.of("newTag1", "newTag2"));
+        verify(imageVariantService, times(1)).generateVariants(postId);
+        verify(postRepository, times(1)).deleteUnusedImages(List.of("old-hash"));
+    }
 
-        postService.updatePost(postId, newTitle, newImage, newTags, newText);
+    @Test
+    void updatePost_shouldFollowFieldsTheRepositoryChanged() throws Exception {
+        Long postId = 1L;
+        MockMultipartFile sameImage = new MockMultipartFile("image", "image.jpg", "image/jpeg", "image-content".getBytes());
+        ImageMetadata current = new ImageMetadata("image/jpeg", Images.sha256Hex(sameImage.getBytes()), 13L);
+        when(postRepository.saveImage(any(), eq(13L))).thenReturn(current);
+        PostUpdate changes = new PostUpdate();
+        changes.setText("New text");
+        when(postRepository.updatePost(eq(postId), any())).thenReturn(new UpdatedPost(changes, List.of("tag1", "tag2"), current.getHash()));
+
+        postService.updatePost(postId, "Title", sameImage, "tag1 tag2", "New text");
+
+        verify(postCountCache, never()).applyWrite(any(), any());
+        verify(postCountCache, times(1)).endWrite();
+        verify(imageVariantService, never()).generateVariants(any());
+        verify(postRepository, never()).deleteUnusedImages(any());
+    }
+
+    @Test
+    void updatePost_shouldDeleteStoredImageWhenUpdateFails() throws Exception {
+        MockMultipartFile image = new MockMultipartFile("image", "image.jpg", "image/jpeg", "image-content".getBytes());
+        when(postRepository.saveImage(any(), eq(13L))).thenReturn(new ImageMetadata("image/jpeg", "hash", 13L));
+        when(postRepository.updatePost(eq(1L), any())).thenThrow(new NoSuchElementException("Post 1 not found"));
+
+        assertThrows(NoSuchElementException.class, () -> postService.updatePost(1L, "Title", image, "tag", "Text"));
+
+        verify(postRepository, times(1)).deleteUnusedImages(List.of("hash"));
+        verify(postCountCache, times(1)).endWrite();
+    }
+
+    @Test
+    void updatePost_shouldNotStoreEmptyImage() throws Exception {
+        Long postId = 1L;
+        when(postRepository.updatePost(eq(postId), any())).thenReturn(new UpdatedPost(new PostUpdate(), List.of("tag1", "tag2"), null));
 
-        assertEquals(newTitle, existingPost.getTitle());
-        assertArrayEquals(newImage.getBytes(), existingPost.getImage());
-        assertEquals(newTags, existingPost.getTagsAsText());
-        assertEquals(newText, existingPost.getText());
+        postService.updatePost(postId, "Title", new MockMultipartFile("image", new byte[0]), "tag1 tag2", "Text");
 
-        verify(postRepository, times(1)).updatePost(existingPost);
+        ArgumentCaptor<PostUpdate> update = ArgumentCaptor.forClass(PostUpdate.class);
+        verify(postRepository, times(1)).updatePost(eq(postId), update.capture());
+        assertNull(update.getValue().getImage());
+        verify(postRepository, never()).saveImage(any(), anyLong());
+        verify(postRepository, never()).findById(any());
+        verify(imageVariantService, never()).generateVariants(any());
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.config.DataSourceConfig;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(DataSourceConfig.class)
+class SchemaIndexCheckTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SchemaIndexCheck schemaIndexCheck;
+
+    @Test
+    void migrations_shouldCreateAllRequiredIndexes() {
+        assertTrue(schemaIndexCheck.findMissingIndexes().isEmpty());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from \"flyway_schema_history\" where not \"success\"", Integer.class));
+    }
+
+    @Test
+    void findMissingIndexes_shouldReportDroppedIndex() {
+        jdbcTemplate.execute("drop index comment_post_id_id_idx");
+        try {
+            assertEquals(List.of("comment(post_id, id)"), schemaIndexCheck.findMissingIndexes());
+        } finally {
+            jdbcTemplate.execute("create index comment_post_id_id_idx on comment (post_id, id)");
+        }
+    }
+
+}